@@ -0,0 +1,76 @@
+package pt.up.fe.comp.perf;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import pt.up.fe.comp.jmm.ast.antlr.AntlrParser;
+import pt.up.fe.comp2024.JavammLexer;
+import pt.up.fe.comp2024.JavammParser;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse throughput on the 'cpf/1_parser_and_tree' corpus, with a new lexer and parser per file (the previous behaviour
+ * of {@link JmmParserImpl}), with the instances it reuses on each thread, and with SLL prediction first. Each operation
+ * parses every file of the corpus once.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmarks {
+
+    private static final File CORPUS = new File("test/pt/up/fe/comp/cpf/1_parser_and_tree");
+
+    private List<String> corpus;
+
+    @Setup
+    public void setup() {
+        corpus = SpecsIo.getFilesRecursive(CORPUS, "jmm").stream()
+                .map(SpecsIo::read)
+                .toList();
+    }
+
+    @Benchmark
+    public void newInstances(Blackhole blackhole) {
+        for (var code : corpus) {
+            var lex = new JavammLexer(new ANTLRInputStream(code));
+            var parser = new JavammParser(new CommonTokenStream(lex));
+            blackhole.consume(AntlrParser.parse(lex, parser, "program", Collections.emptyMap()));
+        }
+    }
+
+    @Benchmark
+    public void reusedInstances(Blackhole blackhole) {
+        for (var code : corpus) {
+            blackhole.consume(new JmmParserImpl().parse(code, Collections.emptyMap()));
+        }
+    }
+
+    @Benchmark
+    public void sllFirst(Blackhole blackhole) {
+        var config = Map.of("parseMode", "sll");
+
+        for (var code : corpus) {
+            blackhole.consume(new JmmParserImpl().parse(code, config));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package pt.up.fe.comp.perf;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pt.up.fe.comp.JmmProgramGenerator;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2024.backend.JasminGenerator;
+import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
+import pt.up.fe.comp2024.optimization.OllirGeneratorVisitor;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of each compiler stage, measured in isolation on the output of the previous stages.
+ * <p>
+ * Inputs are either a fixture under 'test/' or a synthetic program 'synthetic:&lt;methods&gt;x&lt;statements&gt;x&lt;depth&gt;'
+ * built by {@link JmmProgramGenerator}. Run with './gradlew jmh', which also enables the GC profiler to report
+ * allocations per operation.
+ * <p>
+ * Semantic analysis annotates the tree it is given, so it gets a tree parsed again before each invocation (see
+ * {@link ParsedTree}), instead of analysing a tree that was already annotated.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StageBenchmarks {
+
+    private static final String SYNTHETIC = "synthetic:";
+
+    @Param({
+            "test/pt/up/fe/comp/cpf/1_parser_and_tree/AddMultConstants.jmm",
+            "synthetic:10x10x4",
+            "synthetic:100x50x8",
+            "synthetic:10x20x64"
+    })
+    public String input;
+
+    // every run processes every method, instead of reusing the results of the previous one
+    private final Map<String, String> config = Map.of("methodCache", "false");
+
+    private String code;
+    private JmmParserResult parserResult;
+    private JmmSemanticsResult semanticsResult;
+    private OllirResult ollirResult;
+
+    @Setup
+    public void setup() {
+        code = readInput(input);
+        parserResult = new JmmParserImpl().parse(code, config);
+        semanticsResult = new JmmAnalysisImpl().semanticAnalysis(parserResult);
+        ollirResult = new JmmOptimizationImpl().toOllir(semanticsResult);
+    }
+
+    /**
+     * A tree parsed for a single invocation, outside the measured time.
+     */
+    @State(Scope.Thread)
+    public static class ParsedTree {
+
+        private JmmParserResult parserResult;
+
+        @Setup(Level.Invocation)
+        public void setup(StageBenchmarks benchmarks) {
+            parserResult = new JmmParserImpl().parse(benchmarks.code, benchmarks.config);
+        }
+    }
+
+    private static String readInput(String input) {
+        if (!input.startsWith(SYNTHETIC)) {
+            return SpecsIo.read(new File(input));
+        }
+
+        var sizes = input.substring(SYNTHETIC.length()).split("x");
+        var generator = new JmmProgramGenerator(Integer.parseInt(sizes[0]), Integer.parseInt(sizes[1]),
+                Integer.parseInt(sizes[2]));
+
+        return generator.generate("Synthetic");
+    }
+
+    @Benchmark
+    public Object parse() {
+        return new JmmParserImpl().parse(code, config);
+    }
+
+    @Benchmark
+    public Object symbolTable() {
+        return JmmSymbolTableBuilder.build(parserResult.getRootNode());
+    }
+
+    @Benchmark
+    public Object semanticAnalysis(ParsedTree tree) {
+        return new JmmAnalysisImpl().semanticAnalysis(tree.parserResult);
+    }
+
+    @Benchmark
+    public Object ollirGeneration() {
+        return new OllirGeneratorVisitor(semanticsResult.getSymbolTable()).visit(semanticsResult.getRootNode());
+    }
+
+    @Benchmark
+    public Object jasminGeneration() {
+        return new JasminGenerator(ollirResult).build();
+    }
+}
@@ -1,3 +1,8 @@
 @echo off
 
+if defined JMM_DAEMON_PORT (
+    java -cp "./build/install/jmm/lib/*" pt.up.fe.comp2024.CompilerClient %*
+    exit /b %errorlevel%
+)
+
 call "./build/install/jmm/bin/jmm.bat" %*
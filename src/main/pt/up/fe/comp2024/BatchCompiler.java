@@ -0,0 +1,100 @@
+package pt.up.fe.comp2024;
+
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Compiles several input files in the same JVM, using a fork-join pool with a configurable number of workers.
+ * <p>
+ * Each file is compiled independently by {@link JmmCompiler}, so an error in one file does not stop the others. The
+ * pool lives as long as this instance, so it can be shared by several batches (e.g. by {@link CompilerDaemon}).
+ */
+public class BatchCompiler implements AutoCloseable {
+
+    private final JmmCompiler compiler;
+    private final ForkJoinPool pool;
+
+    public BatchCompiler(int threads) {
+        this.compiler = new JmmCompiler();
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * @param inputFiles
+     * @param config
+     * @return the results of each file, in the same order as the given files
+     */
+    public List<CompilationResult> compile(List<File> inputFiles, Map<String, String> config) {
+        List<ForkJoinTask<CompilationResult>> tasks = new ArrayList<>();
+        for (var inputFile : inputFiles) {
+            var unitConfig = CompilerConfig.forInputFile(config, inputFile);
+            tasks.add(pool.submit(() -> compiler.compile(inputFile, unitConfig)));
+        }
+
+        List<CompilationResult> results = new ArrayList<>();
+        for (var task : tasks) {
+            results.add(task.join());
+        }
+
+        return results;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * Prints the reports grouped by input file, followed by a summary of the whole batch.
+     *
+     * @param results
+     * @param elapsedMillis
+     * @param out
+     */
+    public static void printReport(List<CompilationResult> results, long elapsedMillis, PrintStream out) {
+        int failed = 0;
+        int llFallbacks = 0;
+        long errors = 0;
+        long warnings = 0;
+
+        for (var result : results) {
+            // log reports only feed the summary
+            var reports = result.getReports().stream()
+                    .filter(report -> report.getType() != ReportType.LOG)
+                    .toList();
+
+            if (!result.isSuccess()) {
+                failed++;
+            }
+            if (JmmParserImpl.usedLlFallback(result.getReports())) {
+                llFallbacks++;
+            }
+            errors += result.getNumErrors();
+            warnings += reports.stream().filter(report -> report.getType() == ReportType.WARNING).count();
+
+            // only list files that have something to say
+            if (result.isSuccess() && reports.isEmpty()) {
+                continue;
+            }
+
+            out.println("== " + result.getInputFile() + (result.isSuccess() ? "" : " (FAILED)"));
+            reports.forEach(report -> out.println("   " + report));
+        }
+
+        out.println("Compiled " + results.size() + " file(s): " + (results.size() - failed) + " succeeded, "
+                + failed + " failed, " + errors + " error(s), " + warnings + " warning(s) in " + elapsedMillis
+                + " ms");
+
+        if (llFallbacks > 0) {
+            out.println(llFallbacks + " file(s) needed the full LL parsing fallback");
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package pt.up.fe.comp2024;
+
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp2024.backend.ClassFileResult;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Outcome of compiling a single input file with {@link JmmCompiler}.
+ */
+public class CompilationResult {
+
+    private final File inputFile;
+    private final List<Report> reports;
+    private final JasminResult jasminResult;
+    private final ClassFileResult classFileResult;
+    private final String ollirCode;
+
+    public CompilationResult(File inputFile, List<Report> reports, JasminResult jasminResult,
+                             ClassFileResult classFileResult, String ollirCode) {
+        this.inputFile = inputFile;
+        this.reports = reports;
+        this.jasminResult = jasminResult;
+        this.classFileResult = classFileResult;
+        this.ollirCode = ollirCode;
+    }
+
+    public CompilationResult(File inputFile, List<Report> reports, JasminResult jasminResult, String ollirCode) {
+        this(inputFile, reports, jasminResult, null, ollirCode);
+    }
+
+    public CompilationResult(File inputFile, List<Report> reports, JasminResult jasminResult) {
+        this(inputFile, reports, jasminResult, null);
+    }
+
+    public File getInputFile() {
+        return inputFile;
+    }
+
+    /**
+     * @return the reports of all stages that were executed, in stage order
+     */
+    public List<Report> getReports() {
+        return Collections.unmodifiableList(reports);
+    }
+
+    /**
+     * @return the result of the backend, or empty if compilation stopped at an earlier stage or the class file was
+     * generated directly ('-e=class')
+     */
+    public Optional<JasminResult> getJasminResult() {
+        return Optional.ofNullable(jasminResult);
+    }
+
+    /**
+     * @return the result of the class file backend ('-e=class'), or empty if compilation stopped at an earlier stage
+     * or generated Jasmin code
+     */
+    public Optional<ClassFileResult> getClassFileResult() {
+        return Optional.ofNullable(classFileResult);
+    }
+
+    /**
+     * @return the OLLIR code given to the backend, or empty if compilation stopped at an earlier stage
+     */
+    public Optional<String> getOllirCode() {
+        return Optional.ofNullable(ollirCode);
+    }
+
+    public long getNumErrors() {
+        return reports.stream().filter(report -> report.getType() == ReportType.ERROR).count();
+    }
+
+    public boolean isSuccess() {
+        return (jasminResult != null || classFileResult != null) && getNumErrors() == 0;
+    }
+}
@@ -0,0 +1,390 @@
+package pt.up.fe.comp2024;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.backend.ClassFileResult;
+import pt.up.fe.comp2024.utils.VerboseLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed cache of compilation results in a directory, enabled with '-c=&lt;DIR&gt;'.
+ * <p>
+ * The key of a compilation is a hash of the source code, of the options that change the generated code (see
+ * {@link CompilerConfig#getOutputOptions(Map)}) and of the classes of the compiler itself, so a new build of the
+ * compiler never reuses old results. Each entry keeps the reports, the OLLIR code and the Jasmin code or class file, and
+ * a hit skips every stage. Compilations that failed with an exception are not cached.
+ * <p>
+ * The source file is hashed as it is read, and compiled from its path, so it is never read into a String.
+ * <p>
+ * The directory can be shared by several compiler processes. Entries are written to a temporary file and renamed, so
+ * readers never see a partial entry and need no lock. Writing and evicting take an exclusive lock on a file of the
+ * directory. Reading an entry marks it as used, and the least recently used entries are evicted when the directory
+ * grows beyond its size limit ('-l=&lt;MB&gt;'). Temporary files left by a writer that crashed are deleted when
+ * evicting.
+ */
+public class CompileCache {
+
+    private static final String ENTRY_EXTENSION = ".json";
+    private static final String TEMP_EXTENSION = ".tmp";
+    private static final String LOCK_FILE = ".lock";
+
+    private static final Gson GSON = new GsonBuilder().create();
+
+    // file locks are held by the whole JVM, so threads of the same process also lock each other out
+    private static final Map<Path, Object> JVM_LOCKS = new ConcurrentHashMap<>();
+
+    private static String buildId;
+
+    private final Path directory;
+    private final long maxBytes;
+
+    public CompileCache(Path directory, long maxBytes) {
+        this.directory = directory.toAbsolutePath().normalize();
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param config
+     * @return the cache given by the options, or empty if there is no cache
+     */
+    public static Optional<CompileCache> fromConfig(Map<String, String> config) {
+        return CompilerConfig.getCacheDir(config)
+                .map(dir -> new CompileCache(dir.toPath(), CompilerConfig.getCacheLimit(config)));
+    }
+
+    /**
+     * Returns the cached result of compiling the given file, compiling and caching it if there is none.
+     *
+     * @param compiler
+     * @param inputFile
+     * @param config
+     * @return
+     */
+    public CompilationResult compile(JmmCompiler compiler, File inputFile, Map<String, String> config) {
+        var key = getKey(inputFile, config);
+
+        var cached = get(key, inputFile, config);
+        if (cached.isPresent()) {
+            VerboseLog.print(config, VerboseLog.TIMINGS, () -> "Compile cache hit for " + inputFile);
+            return cached.get();
+        }
+
+        var result = compiler.compileFile(inputFile, config);
+
+        // the file was read twice, a result of code that changed in between would be stored under the old key
+        if (getKey(inputFile, config).equals(key)) {
+            put(key, result, config);
+        }
+
+        return result;
+    }
+
+    /**
+     * @param code
+     * @param config
+     * @return the key of compiling the given code with the given options
+     */
+    public static String getKey(String code, Map<String, String> config) {
+        var digest = newKeyDigest(config);
+        digest.update(code.getBytes(StandardCharsets.UTF_8));
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * @param inputFile
+     * @param config
+     * @return the key of compiling the code of the given file with the given options, the same as for its contents
+     */
+    public static String getKey(File inputFile, Map<String, String> config) {
+        var digest = newKeyDigest(config);
+        try (var input = new DigestInputStream(Files.newInputStream(inputFile.toPath()), digest)) {
+            input.transferTo(OutputStream.nullOutputStream());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read input file '" + inputFile + "'", e);
+        }
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * @param config
+     * @return a digest of the build and of the given options, to be updated with the code
+     */
+    private static MessageDigest newKeyDigest(Map<String, String> config) {
+        var digest = newDigest();
+
+        digest.update(getBuildId().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        CompilerConfig.getOutputOptions(config)
+                .forEach((option, value) -> digest.update((option + "=" + value + "\n").getBytes(StandardCharsets.UTF_8)));
+        digest.update((byte) 0);
+
+        return digest;
+    }
+
+    private Optional<CompilationResult> get(String key, File inputFile, Map<String, String> config) {
+        var entryFile = getEntryFile(key);
+
+        CachedEntry entry;
+        try {
+            entry = GSON.fromJson(Files.readString(entryFile, StandardCharsets.UTF_8), CachedEntry.class);
+            // marks the entry as recently used, for eviction
+            Files.setLastModifiedTime(entryFile, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException | JsonParseException e) {
+            // e.g. evicted by another process while reading, compiling again is always safe
+            VerboseLog.print(config, VerboseLog.DETAILS, () -> "Could not read compile cache entry " + entryFile + ": " + e);
+            return Optional.empty();
+        }
+
+        if (entry == null) {
+            return Optional.empty();
+        }
+
+        return Optional.of(entry.toResult(inputFile, config));
+    }
+
+    private void put(String key, CompilationResult result, Map<String, String> config) {
+        if (result.getReports().stream().anyMatch(report -> report.getException().isPresent())) {
+            return;
+        }
+
+        var json = GSON.toJson(CachedEntry.fromResult(result));
+        var entryFile = getEntryFile(key);
+
+        try {
+            withLock(() -> {
+                Files.createDirectories(entryFile.getParent());
+
+                var tempFile = Files.createTempFile(entryFile.getParent(), key, TEMP_EXTENSION);
+                Files.writeString(tempFile, json, StandardCharsets.UTF_8);
+                Files.move(tempFile, entryFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+                evict();
+            });
+        } catch (IOException e) {
+            // the result is still valid, it is just not cached
+            VerboseLog.print(config, VerboseLog.DETAILS, () -> "Could not write compile cache entry " + entryFile + ": " + e);
+        }
+    }
+
+    /**
+     * Deletes the temporary files left by writers that crashed, then the least recently used entries until the cache
+     * fits in its size limit. Called with the lock.
+     */
+    private void evict() throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(directory, 2)) {
+            files = walk.toList();
+        }
+
+        List<Path> entries = new ArrayList<>();
+        for (var file : files) {
+            if (file.toString().endsWith(ENTRY_EXTENSION)) {
+                entries.add(file);
+            } else if (file.toString().endsWith(TEMP_EXTENSION)) {
+                // temporary files are only written with the lock, so no other writer is using this one
+                Files.deleteIfExists(file);
+            }
+        }
+
+        long total = 0;
+        for (var entry : entries) {
+            total += Files.size(entry);
+        }
+
+        if (total <= maxBytes) {
+            return;
+        }
+
+        entries.sort(Comparator.comparing(CompileCache::getLastModified));
+        for (var entry : entries) {
+            if (total <= maxBytes) {
+                break;
+            }
+
+            total -= Files.size(entry);
+            Files.deleteIfExists(entry);
+        }
+    }
+
+    private static FileTime getLastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private interface IOAction {
+        void run() throws IOException;
+    }
+
+    private void withLock(IOAction action) throws IOException {
+        Files.createDirectories(directory);
+
+        synchronized (JVM_LOCKS.computeIfAbsent(directory, dir -> new Object())) {
+            try (var channel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE)) {
+                // released when the channel is closed
+                channel.lock();
+                action.run();
+            }
+        }
+    }
+
+    private Path getEntryFile(String key) {
+        // entries are spread over subdirectories, so that no directory gets too large
+        return directory.resolve(key.substring(0, 2)).resolve(key + ENTRY_EXTENSION);
+    }
+
+    /**
+     * @return a hash of the classes of the compiler, computed once per process
+     */
+    private static synchronized String getBuildId() {
+        if (buildId == null) {
+            buildId = computeBuildId();
+        }
+
+        return buildId;
+    }
+
+    private static String computeBuildId() {
+        var codeSource = JmmCompiler.class.getProtectionDomain().getCodeSource();
+        if (codeSource == null) {
+            return "unknown";
+        }
+
+        var digest = newDigest();
+        try {
+            var location = Path.of(codeSource.getLocation().toURI());
+
+            // a jar, or a directory of classes
+            if (Files.isRegularFile(location)) {
+                digest.update(Files.readAllBytes(location));
+            } else {
+                try (Stream<Path> files = Files.walk(location)) {
+                    for (var file : files.filter(Files::isRegularFile).sorted().toList()) {
+                        digest.update(location.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+                        digest.update(Files.readAllBytes(file));
+                    }
+                }
+            }
+        } catch (IOException | URISyntaxException e) {
+            // without a build id, entries could be reused by another version of the compiler
+            throw new RuntimeException("Could not compute the build id of the compiler", e);
+        }
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * What is stored for each compilation, as JSON.
+     */
+    private static class CachedEntry {
+
+        private String className;
+        private String ollirCode;
+        private String jasminCode;
+        // Base64, for '-e=class'
+        private String classFile;
+        private List<CachedReport> reports;
+
+        static CachedEntry fromResult(CompilationResult result) {
+            var entry = new CachedEntry();
+
+            entry.ollirCode = result.getOllirCode().orElse(null);
+            result.getJasminResult().ifPresent(jasminResult -> {
+                entry.className = jasminResult.getClassName();
+                entry.jasminCode = jasminResult.getJasminCode();
+            });
+            result.getClassFileResult().ifPresent(classFileResult -> {
+                entry.className = classFileResult.getClassName();
+                entry.classFile = Base64.getEncoder().encodeToString(classFileResult.getClassFile());
+            });
+            entry.reports = result.getReports().stream()
+                    .map(CachedReport::fromReport)
+                    .toList();
+
+            return entry;
+        }
+
+        CompilationResult toResult(File inputFile, Map<String, String> config) {
+            List<Report> cachedReports = new ArrayList<>();
+            reports.forEach(report -> cachedReports.add(report.toReport()));
+
+            var jasminResult = jasminCode == null ? null
+                    : new JasminResult(className, jasminCode, cachedReports, config);
+
+            var classFileResult = classFile == null ? null
+                    : new ClassFileResult(className, Base64.getDecoder().decode(classFile), cachedReports, config);
+
+            return new CompilationResult(inputFile, cachedReports, jasminResult, classFileResult, ollirCode);
+        }
+    }
+
+    private static class CachedReport {
+
+        private ReportType type;
+        private Stage stage;
+        private int line;
+        private int column;
+        private String message;
+
+        static CachedReport fromReport(Report report) {
+            var cached = new CachedReport();
+
+            cached.type = report.getType();
+            cached.stage = report.getStage();
+            cached.line = report.getLine();
+            cached.column = report.getColumn();
+            cached.message = report.getMessage();
+
+            return cached;
+        }
+
+        Report toReport() {
+            return new Report(type, stage, line, column, message);
+        }
+    }
+}
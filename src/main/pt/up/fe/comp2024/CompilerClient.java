@@ -0,0 +1,73 @@
+package pt.up.fe.comp2024;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Thin client for {@link CompilerDaemon}. Accepts the same arguments as {@link Launcher}, forwards them to the daemon
+ * listening on the port given by the environment variable {@code JMM_DAEMON_PORT}, and exits with the code returned
+ * by the daemon. The client must run as the user who started the daemon, to read its token.
+ */
+public class CompilerClient {
+
+    public static final String PORT_VARIABLE = "JMM_DAEMON_PORT";
+
+    public static void main(String[] args) {
+        var port = System.getenv(PORT_VARIABLE);
+        if (port == null) {
+            throw new RuntimeException("Expected the port of the compiler daemon in '" + PORT_VARIABLE + "'");
+        }
+
+        var request = new StringBuilder(CompilerDaemon.COMPILE)
+                .append(CompilerDaemon.SEPARATOR)
+                .append(System.getProperty("user.dir"));
+        for (var arg : args) {
+            request.append(CompilerDaemon.SEPARATOR).append(arg);
+        }
+
+        System.exit(send(Integer.parseInt(port), request.toString()));
+    }
+
+    /**
+     * Sends a request to the daemon, printing its output.
+     *
+     * @param port
+     * @param request
+     * @return the exit code sent by the daemon
+     */
+    public static int send(int port, String request) {
+        var tokenFile = CompilerDaemon.getTokenFile(port);
+        String token;
+        try {
+            token = Files.readString(tokenFile, StandardCharsets.US_ASCII).strip();
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read the token of the compiler daemon in '" + tokenFile + "'", e);
+        }
+
+        try (var socket = new Socket(InetAddress.getLoopbackAddress(), port);
+             var in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             var out = new PrintStream(socket.getOutputStream(), true, StandardCharsets.UTF_8)) {
+
+            out.println(token);
+            out.println(request);
+
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith(CompilerDaemon.EXIT + " ")) {
+                    return Integer.parseInt(line.substring(CompilerDaemon.EXIT.length() + 1));
+                }
+                System.out.println(line);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Could not connect to the compiler daemon on port " + port, e);
+        }
+
+        throw new RuntimeException("Compiler daemon closed the connection without an exit code");
+    }
+}
@@ -1,15 +1,43 @@
 package pt.up.fe.comp2024;
 
+import pt.up.fe.comp2024.backend.OutputFormat;
+import pt.up.fe.comp2024.parser.ParseMode;
+import pt.up.fe.comp2024.utils.VerboseLog;
+
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 public class CompilerConfig {
 
     private static final String INPUT_FILE = "inputFile";
     private static final String OPTIMIZE = "optimize";
     private static final String REGISTER = "registerAllocation";
+    private static final String BATCH_INPUT = "batchInput";
+    private static final String THREADS = "threads";
+    private static final String DAEMON_PORT = "daemonPort";
+    private static final String PARSE_MODE = "parseMode";
+    private static final String VERBOSITY = "verbosity";
+    private static final String STATS = "stats";
+    private static final String PARALLEL_ANALYSIS = "parallelAnalysis";
+    private static final String METHOD_CACHE = "methodCache";
+    private static final String CACHE_DIR = "cacheDir";
+    private static final String CACHE_LIMIT = "cacheLimit";
+    private static final String OUTPUT_FORMAT = "outputFormat";
+
+    private static final String JMM_EXTENSION = ".jmm";
 
 
     static Map<String, String> shortToLong = new HashMap<>();
@@ -18,6 +46,17 @@ public class CompilerConfig {
         shortToLong.put("i", CompilerConfig.INPUT_FILE);
         shortToLong.put("o", CompilerConfig.OPTIMIZE);
         shortToLong.put("r", CompilerConfig.REGISTER);
+        shortToLong.put("b", CompilerConfig.BATCH_INPUT);
+        shortToLong.put("t", CompilerConfig.THREADS);
+        shortToLong.put("d", CompilerConfig.DAEMON_PORT);
+        shortToLong.put("p", CompilerConfig.PARSE_MODE);
+        shortToLong.put("v", CompilerConfig.VERBOSITY);
+        shortToLong.put("s", CompilerConfig.STATS);
+        shortToLong.put("a", CompilerConfig.PARALLEL_ANALYSIS);
+        shortToLong.put("m", CompilerConfig.METHOD_CACHE);
+        shortToLong.put("c", CompilerConfig.CACHE_DIR);
+        shortToLong.put("l", CompilerConfig.CACHE_LIMIT);
+        shortToLong.put("e", CompilerConfig.OUTPUT_FORMAT);
     }
 
 
@@ -32,6 +71,244 @@ public class CompilerConfig {
         return Optional.of(new File(inputFile));
     }
 
+    /**
+     * The batch input can be a directory (every .jmm file found recursively), a glob pattern (e.g. 'tests/**.jmm'),
+     * or a file with one path per line when prefixed with '@'.
+     *
+     * @param config
+     * @return the files to compile in batch mode, sorted by path, or empty if not in batch mode
+     */
+    public static Optional<List<File>> getBatchInput(Map<String, String> config) {
+        var batchInput = config.get(BATCH_INPUT);
+
+        if (batchInput == null) {
+            return Optional.empty();
+        }
+
+        return Optional.of(expandBatchInput(batchInput));
+    }
+
+    public static boolean isBatchMode(Map<String, String> config) {
+        return config.containsKey(BATCH_INPUT);
+    }
+
+    /**
+     * @param config
+     * @return the number of worker threads used in batch mode, defaults to the number of available processors
+     */
+    public static int getThreads(Map<String, String> config) {
+        var threads = config.get(THREADS);
+
+        if (threads == null) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+
+        int value = Integer.parseInt(threads);
+        if (value < 1) {
+            throw new RuntimeException("Option '-t' expects a positive number of threads, got '" + threads + "'");
+        }
+
+        return value;
+    }
+
+    /**
+     * Creates the configuration of a single unit of a batch compilation, which shares all options except the input
+     * file.
+     *
+     * @param config
+     * @param inputFile
+     * @return
+     */
+    public static Map<String, String> forInputFile(Map<String, String> config, File inputFile) {
+        var unitConfig = new HashMap<>(config);
+
+        unitConfig.remove(BATCH_INPUT);
+        unitConfig.put(INPUT_FILE, inputFile.getAbsolutePath());
+
+        return unitConfig;
+    }
+
+    private static List<File> expandBatchInput(String batchInput) {
+
+        // list file
+        if (batchInput.startsWith("@")) {
+            var listFile = Path.of(batchInput.substring(1));
+            try (Stream<String> lines = Files.lines(listFile)) {
+                return lines.map(String::strip)
+                        .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                        .map(File::new)
+                        .toList();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read list of input files '" + listFile + "'", e);
+            }
+        }
+
+        // directory
+        var directory = new File(batchInput);
+        if (directory.isDirectory()) {
+            return findFiles(directory.toPath(), path -> path.toString().endsWith(JMM_EXTENSION));
+        }
+
+        // glob, relative to the longest prefix without wildcards
+        int firstWildcard = indexOfWildcard(batchInput);
+        if (firstWildcard == -1) {
+            throw new RuntimeException("Option '-b' expects a directory, a glob or a @list file, got '" + batchInput + "'");
+        }
+
+        int lastSeparator = batchInput.lastIndexOf('/', firstWildcard);
+        var root = Path.of(lastSeparator == -1 ? "." : batchInput.substring(0, lastSeparator + 1));
+        var matcher = FileSystems.getDefault().getPathMatcher("glob:" + batchInput.substring(lastSeparator + 1));
+
+        return findFiles(root, path -> matcher.matches(root.relativize(path)));
+    }
+
+    private static int indexOfWildcard(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            if ("*?[{".indexOf(pattern.charAt(i)) != -1) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static List<File> findFiles(Path root, Predicate<Path> filter) {
+        try (Stream<Path> paths = Files.walk(root)) {
+            var files = new ArrayList<File>();
+            paths.filter(Files::isRegularFile)
+                    .filter(filter)
+                    .sorted()
+                    .forEach(path -> files.add(path.toFile()));
+            return files;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not list input files in '" + root + "'", e);
+        }
+    }
+
+    public static boolean isDaemonMode(Map<String, String> config) {
+        return config.containsKey(DAEMON_PORT);
+    }
+
+    public static int getDaemonPort(Map<String, String> config) {
+        return Integer.parseInt(config.get(DAEMON_PORT));
+    }
+
+    /**
+     * @param config
+     * @return the prediction strategy of the parser, '-p=ll' (default) or '-p=sll'
+     */
+    public static ParseMode getParseMode(Map<String, String> config) {
+        return ParseMode.fromString(config.getOrDefault(PARSE_MODE, "ll"));
+    }
+
+    /**
+     * @param config
+     * @return the verbosity level, 0 (default) prints no debug information, see {@link VerboseLog} for the others
+     */
+    public static int getVerbosity(Map<String, String> config) {
+        var verbosity = config.getOrDefault(VERBOSITY, "0");
+
+        // '-v' without a value
+        if (verbosity.equals("true")) {
+            return VerboseLog.TIMINGS;
+        }
+
+        return Integer.parseInt(verbosity);
+    }
+
+    /**
+     * Per-stage wall time, CPU time and allocations are printed with '-s' as a table, or with '-s=json' as one JSON
+     * object per compiled file.
+     *
+     * @param config
+     * @return the format of the stats, 'table' or 'json', or empty if stats are disabled
+     */
+    public static Optional<String> getStats(Map<String, String> config) {
+        var stats = config.get(STATS);
+
+        if (stats == null || stats.equals("false")) {
+            return Optional.empty();
+        }
+
+        return switch (stats) {
+            case "true", "table" -> Optional.of("table");
+            case "json" -> Optional.of("json");
+            default -> throw new RuntimeException("Option '-s' expects 'table' or 'json', got '" + stats + "'");
+        };
+    }
+
+    /**
+     * With '-a', the methods of a class are semantically analysed in parallel, on the fork-join pool of the current
+     * thread (e.g. the pool of {@link BatchCompiler}) or on the common pool.
+     *
+     * @param config
+     * @return if the methods are analysed in parallel, false by default
+     */
+    public static boolean getParallelAnalysis(Map<String, String> config) {
+        return Boolean.parseBoolean(config.getOrDefault(PARALLEL_ANALYSIS, "false"));
+    }
+
+    /**
+     * The reports and the OLLIR code of each method are kept in memory and reused when the same method of the same
+     * class is compiled again (e.g. by {@link CompilerDaemon}). Use '-m=true' to turn it on.
+     *
+     * @param config
+     * @return if results of unchanged methods are reused, false by default
+     */
+    public static boolean getMethodCache(Map<String, String> config) {
+        return Boolean.parseBoolean(config.getOrDefault(METHOD_CACHE, "false"));
+    }
+
+    /**
+     * With '-c=<DIR>', the results of each compilation are kept in the given directory, which can be shared by several
+     * compiler processes, see {@link CompileCache}.
+     *
+     * @param config
+     * @return the directory of the compile cache, or empty if there is no cache
+     */
+    public static Optional<File> getCacheDir(Map<String, String> config) {
+        return Optional.ofNullable(config.get(CACHE_DIR)).map(File::new);
+    }
+
+    /**
+     * @param config
+     * @return the maximum size of the compile cache, in bytes, set in megabytes with '-l=<MB>' (256 by default)
+     */
+    public static long getCacheLimit(Map<String, String> config) {
+        var limit = config.getOrDefault(CACHE_LIMIT, "256");
+
+        long megabytes = Long.parseLong(limit);
+        if (megabytes < 1) {
+            throw new RuntimeException("Option '-l' expects a positive size in megabytes, got '" + limit + "'");
+        }
+
+        return megabytes * 1024 * 1024;
+    }
+
+    /**
+     * @param config
+     * @return what the backend generates, '-e=jasmin' (default) or '-e=class' to write the class file directly
+     */
+    public static OutputFormat getOutputFormat(Map<String, String> config) {
+        return OutputFormat.fromString(config.getOrDefault(OUTPUT_FORMAT, "jasmin"));
+    }
+
+    /**
+     * Options that change the generated code, so results compiled with different values cannot be reused.
+     *
+     * @param config
+     * @return the value of each of those options, sorted by name
+     */
+    public static SortedMap<String, String> getOutputOptions(Map<String, String> config) {
+        var options = new TreeMap<String, String>();
+
+        options.put(OPTIMIZE, String.valueOf(getOptimize(config)));
+        options.put(REGISTER, String.valueOf(getRegisterAllocation(config)));
+        options.put(OUTPUT_FORMAT, getOutputFormat(config).name());
+
+        return options;
+    }
+
     public static boolean getOptimize(Map<String, String> config) {
         return Boolean.parseBoolean(config.getOrDefault(OPTIMIZE, "false"));
     }
@@ -61,6 +338,43 @@ public class CompilerConfig {
         return shortToLong.containsKey(shortOpt);
     }
 
+    /**
+     * Parses arguments that were given in another working directory (e.g. by a client of {@link CompilerDaemon}),
+     * resolving relative input paths against that directory.
+     *
+     * @param args
+     * @param workingDir
+     * @return
+     */
+    public static Map<String, String> parseArgs(String[] args, File workingDir) {
+        var resolvedArgs = new String[args.length];
+
+        for (int i = 0; i < args.length; i++) {
+            resolvedArgs[i] = resolvePathArg(args[i], workingDir);
+        }
+
+        return parseArgs(resolvedArgs);
+    }
+
+    private static String resolvePathArg(String arg, File workingDir) {
+        if (!arg.startsWith("-i=") && !arg.startsWith("-b=") && !arg.startsWith("-c=")) {
+            return arg;
+        }
+
+        var prefix = arg.substring(0, 3);
+        var value = arg.substring(3);
+        if (value.startsWith("@")) {
+            prefix += "@";
+            value = value.substring(1);
+        }
+
+        if (new File(value).isAbsolute()) {
+            return arg;
+        }
+
+        return prefix + new File(workingDir, value).getPath();
+    }
+
     public static Map<String, String> parseArgs(String[] args) {
 
         // default options for config
@@ -72,26 +386,43 @@ public class CompilerConfig {
                 throw new RuntimeException("Arguments should start with '-'");
             }
 
-            String shortOption = arg.substring(1, 2);
+            // options are a single letter, followed by nothing or by '=<value>'
+            int equalSign = arg.indexOf('=');
+            String shortOption = equalSign == -1 ? arg.substring(1) : arg.substring(1, equalSign);
             if (!isShortOpt(shortOption)) {
-                throw new RuntimeException("Unrecognized option '-" + shortOption + "'");
+                throw new RuntimeException("Unrecognized option '" + arg + "'");
             }
 
-            String value = "true";
-            if (arg.length() > 2) {
-                String equalSign = arg.substring(2, 3);
-                if (equalSign.equals("=")) {
-
-                    value = arg.substring(3);
-                }
-            }
+            String value = equalSign == -1 ? "true" : arg.substring(equalSign + 1);
 
             config.put(getLongOpt(shortOption), value);
         }
 
+        // the daemon receives its input files with each request
+        if (config.containsKey(DAEMON_PORT)) {
+            getDaemonPort(config);
+            getThreads(config);
+
+            return config;
+        }
+
+        // in batch mode the input files are only expanded when compiling
+        if (config.containsKey(BATCH_INPUT)) {
+            getThreads(config);
+            getCacheLimit(config);
+            getOptimize(config);
+            getRegisterAllocation(config);
+            getParseMode(config);
+            getOutputFormat(config);
+            getVerbosity(config);
+            getStats(config);
+
+            return config;
+        }
+
         if (!config.containsKey(INPUT_FILE)) {
 
-            throw new RuntimeException("Expected an input file, use '-i=<PATH_TO_FILE>'");
+            throw new RuntimeException("Expected an input file, use '-i=<PATH_TO_FILE>' or '-b=<DIR|GLOB|@LIST>'");
         }
 
         // make sure we save the absolute path of the input file
@@ -104,8 +435,13 @@ public class CompilerConfig {
         config.put(INPUT_FILE, absolutePath);
 
         // Verify if values are valid
+        getCacheLimit(config);
         getOptimize(config);
         getRegisterAllocation(config);
+        getParseMode(config);
+        getOutputFormat(config);
+        getVerbosity(config);
+        getStats(config);
 
         return config;
     }
@@ -0,0 +1,263 @@
+package pt.up.fe.comp2024;
+
+import pt.up.fe.comp2024.utils.VerboseLog;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Long-running compiler that accepts requests on a localhost port, so that JVM startup, class loading and JIT/ANTLR
+ * warm-up are only paid once.
+ * <p>
+ * The port is open to every local user, so each connection must start with a line holding the token the daemon writes
+ * to {@link #getTokenFile(int)} when it starts. The file can only be read by the user who started the daemon.
+ * <p>
+ * The protocol is line based. After the token, a request is a single line, with tab-separated fields:
+ * <ul>
+ *     <li>{@code COMPILE <working dir> <arg>*}: compiles with the same arguments as {@link Launcher}</li>
+ *     <li>{@code PING}: checks that the daemon is alive</li>
+ *     <li>{@code SHUTDOWN}: stops the daemon</li>
+ * </ul>
+ * The response is the compiler output, including the debug output and stats of the request ('-v', '-s'), followed by
+ * a last line {@code EXIT <code>}.
+ */
+public class CompilerDaemon {
+
+    public static final String COMPILE = "COMPILE";
+    public static final String PING = "PING";
+    public static final String SHUTDOWN = "SHUTDOWN";
+    public static final String EXIT = "EXIT";
+    public static final String SEPARATOR = "\t";
+
+    private static final String WARM_UP_CODE = """
+            class WarmUp {
+                int field;
+                public int sum(int[] a, int n) {
+                    int i;
+                    int s;
+                    boolean done;
+                    i = 0;
+                    s = 0;
+                    done = false;
+                    while (i < n && !done) {
+                        s = s + a[i] * 2 - i / 1;
+                        i = i + 1;
+                    }
+                    if (s < 0) { s = 0; } else { s = s + this.sum(new int[1], 0); }
+                    return s;
+                }
+                public static void main(String[] args) {
+                }
+            }
+            """;
+
+    private static final int TOKEN_BYTES = 32;
+
+    private final int port;
+    private final BatchCompiler compiler;
+    private final ExecutorService connections;
+    private final byte[] token;
+
+    private volatile boolean running;
+
+    public CompilerDaemon(int port, int threads) {
+        this.port = port;
+        this.compiler = new BatchCompiler(threads);
+        this.connections = Executors.newCachedThreadPool();
+        this.token = newToken();
+        this.running = false;
+    }
+
+    /**
+     * @param port
+     * @return the file with the token of the daemon listening on the given port, in the home directory of the user
+     */
+    public static Path getTokenFile(int port) {
+        return Path.of(System.getProperty("user.home"), ".jmm-daemon-" + port + ".token");
+    }
+
+    private static byte[] newToken() {
+        var bytes = new byte[TOKEN_BYTES];
+        new SecureRandom().nextBytes(bytes);
+
+        return HexFormat.of().formatHex(bytes).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Warms up the compiler and serves requests until a {@code SHUTDOWN} request arrives.
+     */
+    public void run() {
+        warmUp();
+
+        Path tokenFile = null;
+        try (var server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            tokenFile = writeToken(server.getLocalPort());
+            running = true;
+            System.out.println("Compiler daemon listening on " + server.getLocalSocketAddress()
+                    + ", token in " + tokenFile);
+
+            while (running) {
+                var socket = server.accept();
+                connections.execute(() -> serve(socket, server));
+            }
+        } catch (IOException e) {
+            // accept() fails when the server socket is closed by a shutdown request
+            if (running) {
+                throw new UncheckedIOException("Compiler daemon stopped unexpectedly", e);
+            }
+        } finally {
+            connections.shutdown();
+            compiler.close();
+            deleteToken(tokenFile);
+        }
+    }
+
+    /**
+     * Writes the token to a new file that only the current user can read.
+     */
+    private Path writeToken(int actualPort) throws IOException {
+        var tokenFile = getTokenFile(actualPort);
+
+        // a file left by a daemon that did not shut down cleanly
+        Files.deleteIfExists(tokenFile);
+
+        try {
+            Files.createFile(tokenFile, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } catch (UnsupportedOperationException e) {
+            // not a POSIX file system, the file gets the default permissions of the home directory
+            Files.createFile(tokenFile);
+        } catch (FileAlreadyExistsException e) {
+            throw new IOException("Token file '" + tokenFile + "' was created by someone else", e);
+        }
+
+        Files.write(tokenFile, token);
+
+        return tokenFile;
+    }
+
+    private static void deleteToken(Path tokenFile) {
+        if (tokenFile == null) {
+            return;
+        }
+
+        try {
+            Files.deleteIfExists(tokenFile);
+        } catch (IOException e) {
+            System.err.println("Could not delete token file '" + tokenFile + "': " + e.getMessage());
+        }
+    }
+
+    private boolean isAuthorized(String line) {
+        return line != null && MessageDigest.isEqual(token, line.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Compiles a small program that goes through every stage, so that the first real request does not pay for class
+     * loading and for the initial ANTLR predictions.
+     */
+    private void warmUp() {
+        new JmmCompiler().compile(new File("WarmUp.jmm"), WARM_UP_CODE, CompilerConfig.getDefault());
+    }
+
+    private void serve(Socket socket, ServerSocket server) {
+        try (socket;
+             var in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             var out = new PrintStream(socket.getOutputStream(), true, StandardCharsets.UTF_8)) {
+
+            if (!isAuthorized(in.readLine())) {
+                out.println("Invalid daemon token");
+                out.println(EXIT + " 2");
+                return;
+            }
+
+            var request = in.readLine();
+            if (request == null) {
+                return;
+            }
+
+            int exitCode = handle(request, out);
+            out.println(EXIT + " " + exitCode);
+
+            if (request.equals(SHUTDOWN)) {
+                running = false;
+                server.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Could not serve compiler request: " + e.getMessage());
+        }
+    }
+
+    private int handle(String request, PrintStream out) {
+        var fields = Arrays.stream(request.split(SEPARATOR, -1))
+                .filter(field -> !field.isEmpty())
+                .toList();
+
+        if (fields.isEmpty()) {
+            out.println("Empty request");
+            return 2;
+        }
+
+        switch (fields.get(0)) {
+            case PING, SHUTDOWN:
+                return 0;
+            case COMPILE:
+                break;
+            default:
+                out.println("Unknown request '" + fields.get(0) + "'");
+                return 2;
+        }
+
+        if (fields.size() < 2) {
+            out.println("Expected the working directory of the client");
+            return 2;
+        }
+
+        Map<String, String> config;
+        List<File> inputFiles;
+        try {
+            var args = fields.subList(2, fields.size()).toArray(String[]::new);
+            config = CompilerConfig.parseArgs(args, new File(fields.get(1)));
+            inputFiles = CompilerConfig.isBatchMode(config) ?
+                    CompilerConfig.getBatchInput(config).orElseThrow() :
+                    List.of(CompilerConfig.getInputFile(config).orElseThrow());
+        } catch (RuntimeException e) {
+            out.println(e.getMessage());
+            return 2;
+        }
+
+        // debug output and stats go to the client, not to the console of the daemon
+        var requestConfig = VerboseLog.withOutput(config, out);
+        List<CompilationResult> results;
+        long start = System.nanoTime();
+        try {
+            results = compiler.compile(inputFiles, requestConfig);
+        } finally {
+            VerboseLog.release(requestConfig);
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        BatchCompiler.printReport(results, elapsedMillis, out);
+
+        return results.stream().allMatch(CompilationResult::isSuccess) ? 0 : 1;
+    }
+}
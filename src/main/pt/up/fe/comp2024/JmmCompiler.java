@@ -0,0 +1,152 @@
+package pt.up.fe.comp2024;
+
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2024.backend.ClassFileBackendImpl;
+import pt.up.fe.comp2024.backend.JasminBackendImpl;
+import pt.up.fe.comp2024.backend.OutputFormat;
+import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.comp2024.utils.ReportUtils;
+import pt.up.fe.comp2024.utils.VerboseLog;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs every stage of the compiler (parsing, semantic analysis, OLLIR generation and Jasmin or class file generation)
+ * over a single compilation unit, stopping at the first stage that reports errors.
+ * <p>
+ * The stages are created for each compilation, so a single instance can be shared by several threads.
+ */
+public class JmmCompiler {
+
+    /**
+     * Compiles the given file, or reuses a previous compilation of the same code when a compile cache is configured
+     * ('-c=<DIR>', see {@link CompileCache}).
+     *
+     * @param inputFile
+     * @param config
+     * @return
+     */
+    public CompilationResult compile(File inputFile, Map<String, String> config) {
+        try {
+            var cache = CompileCache.fromConfig(config);
+            if (cache.isPresent()) {
+                return cache.get().compile(this, inputFile, config);
+            }
+
+            return compileFile(inputFile, config);
+        } catch (Exception e) {
+            return newError(inputFile, e);
+        }
+    }
+
+    /**
+     * Compiles the given file without a compile cache, parsing it directly, without reading it into a String.
+     *
+     * @param inputFile
+     * @param config
+     * @return
+     */
+    CompilationResult compileFile(File inputFile, Map<String, String> config) {
+        var stats = new StageStats(CompilerConfig.getStats(config).isPresent());
+        var parserResult = stats.measure("parse", () -> new JmmParserImpl().parse(inputFile, config));
+        return runStages(inputFile, parserResult, stats);
+    }
+
+    /**
+     * Compiles the given code. The reports of each stage already include the reports of the previous stages.
+     *
+     * @param inputFile the file the code came from, only used to identify the result
+     * @param code
+     * @param config
+     * @return
+     */
+    public CompilationResult compile(File inputFile, String code, Map<String, String> config) {
+        try {
+            var stats = new StageStats(CompilerConfig.getStats(config).isPresent());
+            var parserResult = stats.measure("parse", () -> new JmmParserImpl().parse(code, config));
+            return runStages(inputFile, parserResult, stats);
+        } catch (Exception e) {
+            return newError(inputFile, e);
+        }
+    }
+
+    private CompilationResult newError(File inputFile, Exception e) {
+        List<Report> reports = new ArrayList<>();
+        reports.add(Report.newError(Stage.OTHER, -1, -1, "Exception while compiling '" + inputFile + "'", e));
+        return new CompilationResult(inputFile, reports, null);
+    }
+
+    private CompilationResult runStages(File inputFile, JmmParserResult parserResult, StageStats stats) {
+        var config = parserResult.getConfig();
+
+        try {
+            // Parsing stage
+            if (ReportUtils.anyError(parserResult.getReports())) {
+                return new CompilationResult(inputFile, parserResult.getReports(), null);
+            }
+
+            // Semantic Analysis stage
+            var semanticsResult = stats.measureNested("analysis", analysisStats ->
+                    new JmmAnalysisImpl(analysisStats).semanticAnalysis(parserResult));
+            if (ReportUtils.anyError(semanticsResult.getReports())) {
+                return new CompilationResult(inputFile, semanticsResult.getReports(), null);
+            }
+
+            // Optimization stage
+            var ollirResult = stats.measureNested("ollir", ollirStats -> {
+                var optimization = new JmmOptimizationImpl(ollirStats);
+                return optimization.optimize(optimization.toOllir(optimization.optimize(semanticsResult)));
+            });
+            if (ReportUtils.anyError(ollirResult.getReports())) {
+                return new CompilationResult(inputFile, ollirResult.getReports(), null);
+            }
+
+            // Code generation stage
+            if (CompilerConfig.getOutputFormat(config) == OutputFormat.CLASS) {
+                var classFileResult = stats.measureNested("class", classStats ->
+                        new ClassFileBackendImpl(classStats).toClassFile(ollirResult));
+                if (ReportUtils.anyError(classFileResult.getReports())) {
+                    return new CompilationResult(inputFile, classFileResult.getReports(), null);
+                }
+
+                return new CompilationResult(inputFile, classFileResult.getReports(), null, classFileResult,
+                        ollirResult.getOllirCode());
+            }
+
+            var jasminResult = stats.measureNested("jasmin", jasminStats ->
+                    new JasminBackendImpl(jasminStats).toJasmin(ollirResult));
+            if (ReportUtils.anyError(jasminResult.getReports())) {
+                return new CompilationResult(inputFile, jasminResult.getReports(), null);
+            }
+
+            VerboseLog.print(config, VerboseLog.DUMPS, jasminResult::getJasminCode);
+
+            return new CompilationResult(inputFile, jasminResult.getReports(), jasminResult, ollirResult.getOllirCode());
+        } finally {
+            VerboseLog.print(config, VerboseLog.TIMINGS, () -> "Timings for " + inputFile + ": " + stats.toSummary());
+            printStats(inputFile, stats, config);
+        }
+    }
+
+    private void printStats(File inputFile, StageStats stats, Map<String, String> config) {
+        var format = CompilerConfig.getStats(config);
+        if (format.isEmpty()) {
+            return;
+        }
+
+        // a single print, so that the stats of files compiled in parallel do not interleave
+        var out = VerboseLog.getOutput(config);
+        if (format.get().equals("json")) {
+            out.println(stats.toJson(inputFile.getPath()));
+        } else {
+            out.print(stats.toTable("Stats for " + inputFile));
+        }
+    }
+}
@@ -1,17 +1,9 @@
 package pt.up.fe.comp2024;
 
 import pt.up.fe.comp.TestUtils;
-import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
-import pt.up.fe.comp.jmm.jasmin.JasminResult;
-import pt.up.fe.comp.jmm.ollir.OllirResult;
-import pt.up.fe.comp.jmm.parser.JmmParserResult;
-import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
-import pt.up.fe.comp2024.backend.JasminBackendImpl;
-import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
-import pt.up.fe.comp2024.parser.JmmParserImpl;
-import pt.up.fe.specs.util.SpecsIo;
 import pt.up.fe.specs.util.SpecsSystem;
 
+import java.util.List;
 import java.util.Map;
 
 public class Launcher {
@@ -21,41 +13,44 @@ public class Launcher {
 
         Map<String, String> config = CompilerConfig.parseArgs(args);
 
+        if (CompilerConfig.isDaemonMode(config)) {
+            new CompilerDaemon(CompilerConfig.getDaemonPort(config), CompilerConfig.getThreads(config)).run();
+            return;
+        }
+
+        if (CompilerConfig.isBatchMode(config)) {
+            compileBatch(config);
+            return;
+        }
+
         var inputFile = CompilerConfig.getInputFile(config).orElseThrow();
         if (!inputFile.isFile()) {
             throw new RuntimeException("Option '-i' expects a path to an existing input file, got '" + args[0] + "'.");
         }
-        String code = SpecsIo.read(inputFile);
-
-        // Parsing stage
-        JmmParserImpl parser = new JmmParserImpl();
-        JmmParserResult parserResult = parser.parse(code, config);
-        TestUtils.noErrors(parserResult.getReports());
-
-        // Print AST
-        //System.out.println(parserResult.getRootNode().toTree());
-
-        // Semantic Analysis stage
-        JmmAnalysisImpl sema = new JmmAnalysisImpl();
-        JmmSemanticsResult semanticsResult = sema.semanticAnalysis(parserResult);
-        TestUtils.noErrors(semanticsResult.getReports());
 
+        // Runs every stage, use '-v=<level>' to print timings and intermediate code
+        var result = new JmmCompiler().compile(inputFile, config);
+        TestUtils.noErrors(result.getReports());
+    }
 
-        // Optimization stage
-        JmmOptimizationImpl ollirGen = new JmmOptimizationImpl();
-        OllirResult ollirResult = ollirGen.toOllir(semanticsResult);
-        TestUtils.noErrors(ollirResult.getReports());
+    private static void compileBatch(Map<String, String> config) {
+        var inputFiles = CompilerConfig.getBatchInput(config).orElseThrow();
+        if (inputFiles.isEmpty()) {
+            throw new RuntimeException("Option '-b' did not match any input file");
+        }
 
-        // Print OLLIR code
-        //System.out.println(ollirResult.getOllirCode());
+        List<CompilationResult> results;
+        long start = System.nanoTime();
+        try (var batch = new BatchCompiler(CompilerConfig.getThreads(config))) {
+            results = batch.compile(inputFiles, config);
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
 
-        // Code generation stage
-        JasminBackendImpl jasminGen = new JasminBackendImpl();
-        JasminResult jasminResult = jasminGen.toJasmin(ollirResult);
-        TestUtils.noErrors(jasminResult.getReports());
+        BatchCompiler.printReport(results, elapsedMillis, System.out);
 
-        // Print Jasmin code
-        //System.out.println(jasminResult.getJasminCode());
+        if (results.stream().anyMatch(result -> !result.isSuccess())) {
+            System.exit(1);
+        }
     }
 
 }
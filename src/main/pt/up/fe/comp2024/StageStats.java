@@ -0,0 +1,212 @@
+package pt.up.fe.comp2024;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Resources spent in each stage of a compilation, in the order the stages started.
+ * <p>
+ * Stages can be nested: {@link #measureNested(String, Function)} gives the stage the stats its own stages are recorded
+ * in, so a stage measured inside 'analysis' (e.g. 'checks') is recorded as 'analysis/checks'. Each stage of the
+ * compiler (e.g. {@code JmmAnalysisImpl}) receives the stats of the stage it runs in, so stages that run on other
+ * threads (e.g. the methods analysed in parallel with '-a') are recorded in the right compilation.
+ * <p>
+ * CPU time and allocated bytes are only collected for detailed stats ('-s'), and only count the thread that ran the
+ * stage.
+ */
+public class StageStats {
+
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN = getThreadBean();
+
+    private final transient boolean detailed;
+    // shared by the stats of every nested stage, which can be recorded by several threads
+    private final List<StageEntry> stages;
+    private final transient String prefix;
+    private final transient int depth;
+
+    public StageStats(boolean detailed) {
+        this(detailed, new CopyOnWriteArrayList<>(), "", 0);
+    }
+
+    private StageStats(boolean detailed, List<StageEntry> stages, String prefix, int depth) {
+        this.detailed = detailed;
+        this.stages = stages;
+        this.prefix = prefix;
+        this.depth = depth;
+    }
+
+    public StageStats() {
+        this(false);
+    }
+
+    private static com.sun.management.ThreadMXBean getThreadBean() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean) {
+            return bean;
+        }
+
+        return null;
+    }
+
+    /**
+     * Runs the given stage, recording the resources it used. Can be called by several threads at once.
+     *
+     * @param stage
+     * @param action
+     * @return the result of the stage
+     */
+    public <T> T measure(String stage, Supplier<T> action) {
+        var entry = new StageEntry(prefix + stage, depth);
+        stages.add(entry);
+
+        long startCpu = detailed ? cpuNanos() : 0;
+        long startAllocated = detailed ? allocatedBytes() : 0;
+        long start = System.nanoTime();
+        try {
+            return action.get();
+        } finally {
+            entry.wallNanos = System.nanoTime() - start;
+            if (detailed) {
+                entry.cpuNanos = cpuNanos() - startCpu;
+                entry.allocatedBytes = allocatedBytes() - startAllocated;
+            }
+        }
+    }
+
+    /**
+     * Runs the given stage, recording the resources it used, and giving it the stats where its own stages are
+     * recorded.
+     *
+     * @param stage
+     * @param action
+     * @return the result of the stage
+     */
+    public <T> T measureNested(String stage, Function<StageStats, T> action) {
+        var nested = new StageStats(detailed, stages, prefix + stage + "/", depth + 1);
+
+        return measure(stage, () -> action.apply(nested));
+    }
+
+    private static long cpuNanos() {
+        if (THREAD_BEAN == null || !THREAD_BEAN.isCurrentThreadCpuTimeSupported()) {
+            return -1;
+        }
+
+        return THREAD_BEAN.getCurrentThreadCpuTime();
+    }
+
+    private static long allocatedBytes() {
+        if (THREAD_BEAN == null || !THREAD_BEAN.isThreadAllocatedMemorySupported()) {
+            return -1;
+        }
+
+        return THREAD_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    public List<StageEntry> getStages() {
+        return stages;
+    }
+
+    /**
+     * @return a single line with the time of each top-level stage, e.g. 'parse 1.20 ms, analysis 0.31 ms'
+     */
+    public String toSummary() {
+        var summary = new StringBuilder();
+
+        for (var stage : stages) {
+            if (stage.depth > 0) {
+                continue;
+            }
+
+            if (!summary.isEmpty()) {
+                summary.append(", ");
+            }
+            summary.append(String.format("%s %.2f ms", stage.name, stage.wallNanos / 1e6));
+        }
+
+        return summary.toString();
+    }
+
+    /**
+     * @param title shown in the first line of the table
+     * @return one line per stage, nested stages are indented below their parent
+     */
+    public String toTable(String title) {
+        var table = new StringBuilder();
+
+        table.append(title).append("\n");
+        table.append(String.format("%-40s %10s %10s %12s%n", "stage", "wall ms", "cpu ms", "alloc KB"));
+
+        for (var stage : stages) {
+            var shortName = stage.name.substring(stage.name.lastIndexOf('/') + 1);
+            table.append(String.format("%-40s %10.2f %10s %12s%n",
+                    "  ".repeat(stage.depth) + shortName,
+                    stage.wallNanos / 1e6,
+                    stage.cpuNanos < 0 ? "-" : String.format("%.2f", stage.cpuNanos / 1e6),
+                    stage.allocatedBytes < 0 ? "-" : String.valueOf(stage.allocatedBytes / 1024)));
+        }
+
+        return table.toString();
+    }
+
+    /**
+     * @param file the compiled file, added to the JSON object
+     * @return a single-line JSON object
+     */
+    public String toJson(String file) {
+        Gson gson = new GsonBuilder().create();
+
+        var json = gson.toJsonTree(this).getAsJsonObject();
+        json.addProperty("file", file);
+
+        return gson.toJson(json);
+    }
+
+    public static class StageEntry {
+
+        private final String name;
+        private final int depth;
+        private long wallNanos;
+        private long cpuNanos;
+        private long allocatedBytes;
+
+        private StageEntry(String name, int depth) {
+            this.name = name;
+            this.depth = depth;
+            this.wallNanos = 0;
+            this.cpuNanos = -1;
+            this.allocatedBytes = -1;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        /**
+         * @return CPU time of the current thread, or -1 if not measured
+         */
+        public long getCpuNanos() {
+            return cpuNanos;
+        }
+
+        /**
+         * @return bytes allocated by the current thread, or -1 if not measured
+         */
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+    }
+}
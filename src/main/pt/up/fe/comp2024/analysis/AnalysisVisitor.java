@@ -2,22 +2,26 @@ package pt.up.fe.comp2024.analysis;
 
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.ast.JmmNode;
-import pt.up.fe.comp.jmm.ast.PreorderJmmVisitor;
 import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.ast.KindPreorderJmmVisitor;
 
 import java.util.ArrayList;
 import java.util.List;
 
 /**
- *
+ * Base class of the analysis passes. As in any visitor, if a pass registers several visits for the same kind, the last
+ * one wins.
+ * <p>
+ * A pass can run on its own, with {@link #analyze(JmmNode, SymbolTable)}, or together with other passes in a single
+ * traversal, with {@link FusedAnalysisPass}.
  */
-public abstract class AnalysisVisitor extends PreorderJmmVisitor<SymbolTable, Void> implements AnalysisPass {
+public abstract class AnalysisVisitor extends KindPreorderJmmVisitor<SymbolTable, Void> implements AnalysisPass {
 
     private List<Report> reports;
 
     public AnalysisVisitor() {
         reports = new ArrayList<>();
-        setDefaultValue(() -> null);
+        setDefaultVisit((node, table) -> null);
     }
 
     protected void addReport(Report report) {
@@ -28,6 +32,17 @@ public abstract class AnalysisVisitor extends PreorderJmmVisitor<SymbolTable, Vo
         return reports;
     }
 
+    /**
+     * Starts a new list of reports, so that the pass can go on with the next unit of a {@link FusedAnalysisPass}.
+     *
+     * @return the reports added since the last call
+     */
+    List<Report> takeReports() {
+        var unitReports = reports;
+        reports = new ArrayList<>();
+        return unitReports;
+    }
+
 
     @Override
     public List<Report> analyze(JmmNode root, SymbolTable table) {
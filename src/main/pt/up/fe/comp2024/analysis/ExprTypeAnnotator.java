@@ -0,0 +1,64 @@
+package pt.up.fe.comp2024.analysis;
+
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.ast.TypeUtils;
+
+import java.util.Set;
+
+/**
+ * Computes the type of each expression once, right after the symbol table is built, and stores it on the node
+ * together with the name of the enclosing method.
+ * <p>
+ * Later stages read them through {@link TypeUtils#getExprType(JmmNode, SymbolTable)} and
+ * {@link TypeUtils#getEnclosingMethod(JmmNode)}. Types are the instances shared through the symbol table, see
+ * {@link TypeUtils#getType(String, boolean, SymbolTable)}.
+ */
+public class ExprTypeAnnotator {
+
+    private static final Set<String> TYPED_KINDS = Set.of(
+            Kind.BINARY_EXPR.getNodeName(),
+            Kind.BINARY_BOOL_EXPR.getNodeName(),
+            Kind.I_D_EXPR.getNodeName(),
+            Kind.INTEGER_EXPR.getNodeName(),
+            Kind.BOOLEAN_EXPR.getNodeName(),
+            Kind.GET_METHOD.getNodeName());
+
+    private final SymbolTable table;
+
+    public ExprTypeAnnotator(SymbolTable table) {
+        this.table = table;
+    }
+
+    public void annotate(JmmNode root) {
+        annotate(root, null);
+    }
+
+    /**
+     * Visits the children before the node, so that the types of the operands are available when the type of an
+     * expression is computed.
+     */
+    private void annotate(JmmNode node, String method) {
+        if (Kind.METHOD_DECL.check(node)) {
+            method = node.get("name");
+        }
+
+        for (var child : node.getChildren()) {
+            annotate(child, method);
+        }
+
+        // only expressions inside methods have a type
+        if (method == null || !TYPED_KINDS.contains(node.getKind())) {
+            return;
+        }
+
+        node.putObject(TypeUtils.METHOD_ATTRIBUTE, method);
+
+        var type = TypeUtils.computeExprType(node, table);
+        // e.g. methods of imported classes
+        if (type != null) {
+            node.putObject(TypeUtils.TYPE_ATTRIBUTE, TypeUtils.getType(type, table));
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package pt.up.fe.comp2024.analysis;
+
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.StageStats;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.ast.MethodKey;
+import pt.up.fe.comp2024.utils.MethodCache;
+import pt.up.fe.comp2024.utils.ReportUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * Runs several analysis passes in a single preorder traversal of the AST.
+ * <p>
+ * The visits of all passes are grouped in one list per node kind, so adding a pass adds no traversal. Each node is
+ * given to the passes in the order they were added, so each pass sees the same nodes, in the same order, as when it
+ * runs on its own.
+ * <p>
+ * The AST is analysed in units: one for each method, and one for the rest of the class (imports, class declaration
+ * and fields). The units are analysed in lanes, each with its own instances of the passes and its own table of visits,
+ * built once and reused for every unit of the lane, so the state the passes keep (e.g. the current method) is never
+ * shared between threads, and this pass can be used by several threads at once. Without parallelism there is a single
+ * lane. Since the checks of a method do not depend on the other methods, the methods can also be split into contiguous
+ * lanes that run in parallel on a fork-join pool. Either way, the reports are returned in source order, grouped by pass
+ * inside each unit.
+ * <p>
+ * As when the passes run one after the other, a pass that throws stops being applied to that unit, and its reports
+ * are replaced by a single error.
+ * <p>
+ * When given a cache, the reports of a method whose {@link MethodKey} was already analysed are reused, with their
+ * lines moved to where the method is now.
+ * <p>
+ * When given stats, each lane that runs in parallel is recorded as a stage, since the stage that runs this pass only
+ * measures the CPU time and the allocations of its own thread.
+ */
+public class FusedAnalysisPass implements AnalysisPass {
+
+    /**
+     * Lanes per thread of the pool, so that a lane with larger methods does not leave the other threads idle.
+     */
+    private static final int LANES_PER_THREAD = 4;
+
+    private record Handler(int pass, BiFunction<JmmNode, SymbolTable, Void> visit) {
+    }
+
+    private final List<Supplier<AnalysisVisitor>> passFactories;
+    private final boolean parallel;
+    private final MethodCache<List<Report>> cache;
+    private final StageStats stats;
+
+    /**
+     * @param passFactories creates a new instance of each pass, called once per lane
+     * @param parallel      if the methods are analysed in parallel
+     * @param cache         reports of each method, relative to its first line, or null to always analyse
+     * @param stats         where the lanes analysed in parallel are recorded, or null to not record them
+     */
+    public FusedAnalysisPass(List<Supplier<AnalysisVisitor>> passFactories, boolean parallel,
+                             MethodCache<List<Report>> cache, StageStats stats) {
+        this.passFactories = passFactories;
+        this.parallel = parallel;
+        this.cache = cache;
+        this.stats = stats;
+    }
+
+    public FusedAnalysisPass(List<Supplier<AnalysisVisitor>> passFactories, boolean parallel) {
+        this(passFactories, parallel, null, null);
+    }
+
+    public FusedAnalysisPass(List<Supplier<AnalysisVisitor>> passFactories) {
+        this(passFactories, false);
+    }
+
+    @Override
+    public List<Report> analyze(JmmNode root, SymbolTable table) {
+        var methods = new ArrayList<JmmNode>();
+        collectMethods(root, methods);
+
+        var keys = cache == null ? null : new MethodKey(table);
+
+        int laneCount = parallel ? Math.min(methods.size(), getParallelism() * LANES_PER_THREAD) : 1;
+        if (laneCount <= 1) {
+            return new Lane(table, keys).analyze(root, methods);
+        }
+
+        List<ForkJoinTask<List<Report>>> tasks = new ArrayList<>();
+        for (int lane = 0; lane < laneCount; lane++) {
+            var laneMethods = methods.subList(lane * methods.size() / laneCount,
+                    (lane + 1) * methods.size() / laneCount);
+            // the rest of the class comes before the methods in the source
+            var laneRoot = lane == 0 ? root : null;
+            var name = "lane " + lane;
+
+            tasks.add(ForkJoinTask.adapt(() ->
+                    measureLane(name, () -> new Lane(table, keys).analyze(laneRoot, laneMethods))));
+        }
+
+        // joined in the order of the lanes, whichever finishes first
+        List<Report> reports = new ArrayList<>();
+        for (var task : ForkJoinTask.invokeAll(tasks)) {
+            reports.addAll(task.join());
+        }
+
+        return reports;
+    }
+
+    private static int getParallelism() {
+        return ForkJoinTask.inForkJoinPool() ? ForkJoinTask.getPool().getParallelism()
+                : ForkJoinPool.getCommonPoolParallelism();
+    }
+
+    private static void collectMethods(JmmNode node, List<JmmNode> methods) {
+        if (Kind.METHOD_DECL.check(node)) {
+            methods.add(node);
+            return;
+        }
+
+        for (var child : node.getChildren()) {
+            collectMethods(child, methods);
+        }
+    }
+
+    private List<Report> measureLane(String name, Supplier<List<Report>> lane) {
+        return stats == null ? lane.get() : stats.measure(name, lane);
+    }
+
+    /**
+     * The instances of the passes, and their visits, used by the units of one thread.
+     */
+    private class Lane {
+
+        private final SymbolTable table;
+        private final MethodKey keys;
+        private final List<AnalysisVisitor> passes;
+        private final Handler[][] handlers;
+
+        /**
+         * @param table
+         * @param keys  the keys of the methods of the class, or null if there is no cache
+         */
+        private Lane(SymbolTable table, MethodKey keys) {
+            this.table = table;
+            this.keys = keys;
+            this.passes = passFactories.stream()
+                    .map(Supplier::get)
+                    .toList();
+            this.handlers = buildHandlers(passes);
+        }
+
+        /**
+         * @param root    the root of the AST, to analyse the rest of the class, or null if it belongs to another lane
+         * @param methods
+         * @return the reports of every pass over the units of the lane
+         */
+        private List<Report> analyze(JmmNode root, List<JmmNode> methods) {
+            List<Report> reports = new ArrayList<>();
+
+            if (root != null) {
+                reports.addAll(analyzeUnit(root, false));
+            }
+
+            for (var method : methods) {
+                reports.addAll(analyzeMethod(method));
+            }
+
+            return reports;
+        }
+
+        /**
+         * @param method
+         * @return the reports of every pass over the method
+         */
+        private List<Report> analyzeMethod(JmmNode method) {
+            if (keys == null) {
+                return analyzeUnit(method, true);
+            }
+
+            var baseLine = MethodKey.getBaseLine(method);
+            var relativeReports = cache.get(keys.get(method),
+                    () -> ReportUtils.shiftLines(analyzeUnit(method, true), -baseLine));
+
+            return ReportUtils.shiftLines(relativeReports, baseLine);
+        }
+
+        /**
+         * @param unitRoot
+         * @param isMethod if false, the methods below the given node are not visited
+         * @return the reports of every pass over the unit
+         */
+        private List<Report> analyzeUnit(JmmNode unitRoot, boolean isMethod) {
+            var failures = new Exception[passes.size()];
+
+            visit(unitRoot, table, handlers, failures, isMethod);
+
+            List<Report> reports = new ArrayList<>();
+            for (int pass = 0; pass < passes.size(); pass++) {
+                // taken even from a failed pass, so its reports do not leak into the next unit
+                var passReports = passes.get(pass).takeReports();
+
+                if (failures[pass] != null) {
+                    reports.add(Report.newError(Stage.SEMANTIC,
+                            -1,
+                            -1,
+                            "Problem while executing analysis pass '" + passes.get(pass).getClass() + "'",
+                            failures[pass])
+                    );
+                } else {
+                    reports.addAll(passReports);
+                }
+            }
+
+            return reports;
+        }
+    }
+
+    /**
+     * @param passes
+     * @return the visits of every pass, by Kind ordinal
+     */
+    private static Handler[][] buildHandlers(List<AnalysisVisitor> passes) {
+        var handlers = new Handler[Kind.values().length][];
+
+        for (var kind : Kind.values()) {
+            // the visits of each kind are ordered by pass
+            List<Handler> kindHandlers = new ArrayList<>();
+            for (int pass = 0; pass < passes.size(); pass++) {
+                var visit = passes.get(pass).getVisit(kind);
+                if (visit != null) {
+                    kindHandlers.add(new Handler(pass, visit));
+                }
+            }
+
+            handlers[kind.ordinal()] = kindHandlers.toArray(Handler[]::new);
+        }
+
+        return handlers;
+    }
+
+    private void visit(JmmNode node, SymbolTable table, Handler[][] handlers, Exception[] failures,
+                       boolean visitMethods) {
+        var kind = Kind.of(node);
+
+        // methods are units of their own
+        if (kind == Kind.METHOD_DECL && !visitMethods) {
+            return;
+        }
+
+        var nodeHandlers = kind == null ? null : handlers[kind.ordinal()];
+
+        if (nodeHandlers != null) {
+            for (var handler : nodeHandlers) {
+                if (failures[handler.pass()] != null) {
+                    continue;
+                }
+
+                try {
+                    handler.visit().apply(node, table);
+                } catch (Exception e) {
+                    failures[handler.pass()] = e;
+                }
+            }
+        }
+
+        for (var child : node.getChildren()) {
+            visit(child, table, handlers, failures, visitMethods);
+        }
+    }
+}
@@ -7,22 +7,37 @@ import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.StageStats;
 import pt.up.fe.comp2024.analysis.passes.UndeclaredVariable;
 import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
 import pt.up.fe.comp2024.analysis.passes.TypeCheck;
+import pt.up.fe.comp2024.utils.MethodCache;
+import pt.up.fe.comp2024.utils.VerboseLog;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Supplier;
 
 public class JmmAnalysisImpl implements JmmAnalysis {
 
+    // a new instance of each pass is created for every method, so that their state is never shared
+    private static final List<Supplier<AnalysisVisitor>> PASSES = List.of(UndeclaredVariable::new, TypeCheck::new);
 
-    private final List<AnalysisPass> analysisPasses;
+    // shared by every compilation in this JVM, so that recompiling a class only analyses the edited methods
+    private static final MethodCache<List<Report>> REPORTS = new MethodCache<>(4096);
 
-    public JmmAnalysisImpl() {
+    private final StageStats stats;
 
-        this.analysisPasses = List.of(new UndeclaredVariable(), new TypeCheck());
+    /**
+     * @param stats where the stages of the analysis are recorded
+     */
+    public JmmAnalysisImpl(StageStats stats) {
+        this.stats = stats;
+    }
 
+    public JmmAnalysisImpl() {
+        this(new StageStats());
     }
 
     @Override
@@ -30,28 +45,34 @@ public class JmmAnalysisImpl implements JmmAnalysis {
 
         JmmNode rootNode = parserResult.getRootNode();
 
-        System.out.println(rootNode.toTree());
+        var config = parserResult.getConfig();
 
-        SymbolTable table = JmmSymbolTableBuilder.build(rootNode);
+        VerboseLog.print(config, VerboseLog.DUMPS, rootNode::toTree);
 
-        System.out.println(table.print());
+        SymbolTable table = stats.measure("symbol table", () -> JmmSymbolTableBuilder.build(rootNode));
 
-        List<Report> reports = new ArrayList<>();
+        VerboseLog.print(config, VerboseLog.DUMPS, table::print);
+
+        stats.measure("types", () -> {
+            new ExprTypeAnnotator(table).annotate(rootNode);
+            return null;
+        });
 
-        // Visit all nodes in the AST
-        for (var analysisPass : analysisPasses) {
-            try {
-                var passReports = analysisPass.analyze(rootNode, table);
-                reports.addAll(passReports);
-            } catch (Exception e) {
-                reports.add(Report.newError(Stage.SEMANTIC,
-                        -1,
-                        -1,
-                        "Problem while executing analysis pass '" + analysisPass.getClass() + "'",
-                        e)
-                );
-            }
+        List<Report> reports = new ArrayList<>();
 
+        // Visit all nodes in the AST, once for all passes
+        try {
+            reports.addAll(stats.measureNested("checks", checksStats ->
+                    new FusedAnalysisPass(PASSES, CompilerConfig.getParallelAnalysis(config),
+                            CompilerConfig.getMethodCache(config) ? REPORTS : null, checksStats)
+                            .analyze(rootNode, table)));
+        } catch (Exception e) {
+            reports.add(Report.newError(Stage.SEMANTIC,
+                    -1,
+                    -1,
+                    "Problem while executing analysis pass '" + FusedAnalysisPass.class + "'",
+                    e)
+            );
         }
 
         return new JmmSemanticsResult(parserResult, table, reports);
@@ -9,9 +9,17 @@ import pt.up.fe.comp.jmm.report.Stage;
 import pt.up.fe.comp2024.analysis.AnalysisVisitor;
 import pt.up.fe.comp2024.ast.Kind;
 import pt.up.fe.comp2024.ast.NodeUtils;
+import pt.up.fe.comp2024.ast.TypeUtils;
+import pt.up.fe.comp2024.symboltable.ScopedSymbol;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 
 import static pt.up.fe.comp2024.ast.Kind.I_D_EXPR;
 
@@ -19,10 +27,19 @@ public class TypeCheck extends AnalysisVisitor {
 
     private String currentMethod;
 
+    // constant size of the last allocation of each array, up to the current statement of the method
+    private Map<String, Integer> arraySizes = Map.of();
+
+    // assignments, declarations and while conditions directly in the body that declares the current variable
+    private JmmNode indexedBody;
+    private Map<String, List<JmmNode>> bodyAssigns = Map.of();
+    private List<JmmNode> bodyListAssigns = List.of();
+    private Map<String, List<JmmNode>> bodyVarDecls = Map.of();
+    private Map<String, Integer> whileConditionUses = Map.of();
+
     public void buildVisitor() {
         addVisit(Kind.CLASS_DECL, this::classDecl);
-        addVisit(Kind.BINARY_EXPR, this::binTypes);
-        addVisit(Kind.METHOD_DECL, this::listTypes);
+        addVisit(Kind.METHOD_DECL, this::methodDecl);
         addVisit(Kind.GET_METHOD, this::getMethod);
         addVisit(Kind.ARRAY_EXPR, this::arrayExpr);
         addVisit(Kind.BINARY_EXPR, this::binExpr);
@@ -37,81 +54,75 @@ public class TypeCheck extends AnalysisVisitor {
 
 
     private Void curlyAssignStmt(JmmNode node, SymbolTable table) {
-        var locals = table.getLocalVariables(currentMethod);
         var idExprs = node.getChildren(I_D_EXPR);
         var name = node.get("name");
-        var parent = node.getParent();
-        var idAssignStmts = parent.getChildren(Kind.I_D_ASSIGN_STMT);
-        for (var idAssignStmt : idAssignStmts) {
-            if (!idAssignStmt.getChildren(Kind.NEW_INT).isEmpty()) {
-                var newInt = idAssignStmt.getChild(0);
-                var newIntChild = newInt.getChild(0);
-                var value = newIntChild.get("value");
-                if (node.getChildren().size() == 2) {
-                    var left = node.getChild(0);
-                    var right = node.getChild(1);
-                    var leftKind = left.getKind();
-                    var rightKind = right.getKind();
-                    if (leftKind.equals(rightKind) && leftKind.equals("IntegerExpr")) {
-                        if (left.get("value").compareTo(value) > 0) {
-                            addReport(Report.newError(
-                                    Stage.SEMANTIC,
-                                    NodeUtils.getLine(node),
-                                    NodeUtils.getColumn(node),
-                                    "Array out of bounds: " + left.get("value") + " and " + value,
-                                    null
-                            ));
-                        }
-                    }
-                }
+        if (node.getChildren().size() == 2) {
+            var index = node.getChild(0);
+            var size = arraySizes.get(name);
+            if (index.getKind().equals("IntegerExpr") && size != null
+                    && Integer.parseInt(index.get("value")) >= size) {
+                addReport(Report.newError(
+                        Stage.SEMANTIC,
+                        NodeUtils.getLine(node),
+                        NodeUtils.getColumn(node),
+                        "Array out of bounds: " + index.get("value") + " and " + size,
+                        null
+                ));
             }
         }
-        for (var idExpr : idExprs) {
-            for (var local : locals) {
-                if (Objects.equals(local.getName(), name)) {
-                    if (Objects.equals(local.getType().isArray(), true)) {
-                        for (var localTmp : locals) {
-                            if (idExpr.hasAttribute("name")) {
-                                if (Objects.equals(localTmp.getName(), idExpr.get("name"))) {
-                                    if (!Objects.equals(localTmp.getType().getName(), "int")) {
-                                        addReport(Report.newError(
-                                                Stage.SEMANTIC,
-                                                NodeUtils.getLine(node),
-                                                NodeUtils.getColumn(node),
-                                                "Can't access array with non int: " + idExpr.get("name"),
-                                                null
-                                        ));
-                                    }
-                                }
-                            }
-                        }
-                    }
+        var isLocalArray = resolveLocal(table, name).map(local -> local.getType().isArray()).orElse(false);
+        if (isLocalArray) {
+            for (var idExpr : idExprs) {
+                var index = resolveLocal(table, idExpr.get("name"));
+                if (index.isPresent() && !Objects.equals(index.get().getType().getName(), "int")) {
+                    addReport(Report.newError(
+                            Stage.SEMANTIC,
+                            NodeUtils.getLine(node),
+                            NodeUtils.getColumn(node),
+                            "Can't access array with non int: " + idExpr.get("name"),
+                            null
+                    ));
                 }
             }
         }
         return null;
     }
 
+    private Void methodDecl(JmmNode method, SymbolTable table) {
+        arraySizes = new HashMap<>();
+        return listTypes(method, table);
+    }
+
+    /**
+     * Keeps the size each array was last allocated with, as the statements are visited in source order, so that an
+     * access is checked against the allocation that reaches it without looking for it again.
+     */
+    private void recordArraySize(JmmNode assign) {
+        var name = assign.get("name");
+        var value = assign.getChild(0);
+        if (Kind.NEW_INT.check(value) && Kind.INTEGER_EXPR.check(value.getChild(0))) {
+            arraySizes.put(name, Integer.parseInt(value.getChild(0).get("value")));
+        } else {
+            // any other value, such as an array allocated with a size only known at runtime, is never out of bounds here
+            arraySizes.remove(name);
+        }
+    }
+
     private Void whileStmt(JmmNode node, SymbolTable table) {
-        var locals = table.getLocalVariables(currentMethod);
-        var idExprs = node.getChildren(I_D_EXPR);
-        var containsLocal = false;
-        for (var local : locals) {
-            for (var idExpr : idExprs) {
-                if (Objects.equals(local.getName(), idExpr.get("name"))) {
-                    containsLocal = true;
-                }
+        for (var idExpr : node.getChildren(I_D_EXPR)) {
+            var local = resolveLocal(table, idExpr.get("name"));
+            if (local.isEmpty()) {
+                continue;
             }
-            var value = local.getType().getName();
-            if (!value.equals("boolean") && containsLocal) {
+            var type = local.get().getType();
+            if (!type.getName().equals("boolean") || type.isArray()) {
                 addReport(Report.newError(
                         Stage.SEMANTIC,
                         NodeUtils.getLine(node),
                         NodeUtils.getColumn(node),
-                        "Can't do a while statement with non boolean: " + value,
+                        "Can't do a while statement with non boolean: " + type.getName(),
                         null
                 ));
-
             }
         }
         return null;
@@ -179,6 +190,7 @@ public class TypeCheck extends AnalysisVisitor {
     }
 
     private Void assignStmt(JmmNode node, SymbolTable table) {
+        recordArraySize(node);
         var name = node.get("name");
         var method = node.getParent();
         var varDecls = method.getParent().getChildren(Kind.VAR_DECL);
@@ -205,50 +217,41 @@ public class TypeCheck extends AnalysisVisitor {
         var right = node.getChild(1);
         var leftKind = left.getKind();
         var rightKind = right.getKind();
-        if(leftKind.equals("BooleanExpr") || rightKind.equals("BooleanExpr")){
+        // the operands of '<' are ints, the operands of '&&' are booleans
+        var operandType = node.get("op").equals("<") ? "int" : "boolean";
+        if(operandType.equals("boolean") && (leftKind.equals("BooleanExpr") || rightKind.equals("BooleanExpr"))){
             return null;
         } else {
-            checkBinBoolExpr(node, table, left, leftKind);
+            checkBinBoolExpr(node, table, left, leftKind, operandType);
         }
-        checkBinBoolExpr(node, table, right, rightKind);
+        checkBinBoolExpr(node, table, right, rightKind, operandType);
         return null;
     }
 
-    private void checkBinBoolExpr(JmmNode node, SymbolTable table, JmmNode left, String leftKind) {
+    private void checkBinBoolExpr(JmmNode node, SymbolTable table, JmmNode left, String leftKind, String operandType) {
         if (leftKind.equals("IDExpr")){
             String leftType = "";
             boolean isLeftArray = false;
-            for(var local : table.getLocalVariables(currentMethod)){
-                if(Objects.equals(local.getName(), left.get("name"))){
-                    leftType = local.getType().getName();
-                    isLeftArray = local.getType().isArray();
-                    break;
-                }
+            var leftVar = resolveLocalOrParam(table, left.get("name"));
+            if (leftVar.isPresent()) {
+                leftType = leftVar.get().getType().getName();
+                isLeftArray = leftVar.get().getType().isArray();
             }
-            if(leftType.isEmpty()) {
-                for (var param : table.getParameters(currentMethod)) {
-                    if (Objects.equals(param.getName(), left.get("name"))) {
-                        leftType = param.getType().getName();
-                        isLeftArray = param.getType().isArray();
-                        break;
-                    }
-                }
-                if(leftType.isEmpty()){
-                    addReport(Report.newError(
-                            Stage.SEMANTIC,
-                            NodeUtils.getLine(node),
-                            NodeUtils.getColumn(node),
-                            "Variable not defined: " + left.get("name"),
-                            null
-                    ));
-                }
+            if(leftType.isEmpty()){
+                addReport(Report.newError(
+                        Stage.SEMANTIC,
+                        NodeUtils.getLine(node),
+                        NodeUtils.getColumn(node),
+                        "Variable not defined: " + left.get("name"),
+                        null
+                ));
             }
-            if(!leftType.equals("boolean") || isLeftArray){
+            if(!leftType.equals(operandType) || isLeftArray){
                 addReport(Report.newError(
                         Stage.SEMANTIC,
                         NodeUtils.getLine(node),
                         NodeUtils.getColumn(node),
-                        "Incompatible types: " + leftType + " and " + "boolean",
+                        "Incompatible types: " + leftType + " and " + operandType,
                         null
                 ));
             }
@@ -256,12 +259,12 @@ public class TypeCheck extends AnalysisVisitor {
         else if(leftKind.equals("GetMethod")){
             var leftType = table.getReturnType(left.get("value")).getName();
             boolean isLeftArray = table.getReturnType(left.get("value")).isArray();
-            if(!leftType.equals("boolean") || isLeftArray){
+            if(!leftType.equals(operandType) || isLeftArray){
                 addReport(Report.newError(
                         Stage.SEMANTIC,
                         NodeUtils.getLine(node),
                         NodeUtils.getColumn(node),
-                        "Incompatible types: " + leftType + " and " + "boolean",
+                        "Incompatible types: " + leftType + " and " + operandType,
                         null
                 ));
             }
@@ -274,7 +277,14 @@ public class TypeCheck extends AnalysisVisitor {
         var returntype = node.getParent().getChild(0);
         var checkArray = node.getChild(0).get("isArray");
         var value = node.getChild(0).get("value");
-        var assignStmts = node.getParent().getChildren(Kind.I_D_ASSIGN_STMT);
+        if (node.getParent() != indexedBody) {
+            indexBody(node.getParent());
+        }
+        // array initializers are checked against every declaration, the other assignments only against theirs
+        var assignStmts = new ArrayList<>(bodyAssigns.getOrDefault(name, List.of()));
+        bodyListAssigns.stream()
+                .filter(stmt -> !Objects.equals(stmt.get("name"), name))
+                .forEach(assignStmts::add);
         for (var stmt : assignStmts) {
             var stmtname = stmt.get("name");
             if (Objects.equals(stmtname, name) && Objects.equals(value, "boolean") && Objects.equals(stmt.getChild(0).isInstance(Kind.INTEGER_EXPR), true)) {
@@ -325,7 +335,7 @@ public class TypeCheck extends AnalysisVisitor {
             }
             else if (Objects.equals(stmtname, name) && Objects.equals(stmt.getChild(0).isInstance(I_D_EXPR), true)){
                 var idname = id.get("name");
-                var assigns = node.getParent().getChildren(Kind.VAR_DECL);
+                var assigns = bodyVarDecls.getOrDefault(idname, List.of());
                 for (var assign : assigns){
                     if( Objects.equals(idname, assign.get("name"))){
                         var assignType = assign.getChild(0);
@@ -359,25 +369,46 @@ public class TypeCheck extends AnalysisVisitor {
                 }
             }
         }
-        var whileStmts = node.getParent().getChildren(Kind.WHILE_STMT);
-        for (var whileStmt : whileStmts) {
-            var idExprs = whileStmt.getChildren(I_D_EXPR);
-            for (var idexpr : idExprs) {
-                var idname = idexpr.get("name");
-                if (Objects.equals(name, idname) && checkArray.equals("true")) {
-                    addReport(Report.newError(
-                            Stage.SEMANTIC,
-                            NodeUtils.getLine(node),
-                            NodeUtils.getColumn(node),
-                            "Can't do a while statement with array: " + node.getChildren(Kind.TYPE),
-                            null
-                    ));
-                }
+        if (checkArray.equals("true")) {
+            for (int i = 0; i < whileConditionUses.getOrDefault(name, 0); i++) {
+                addReport(Report.newError(
+                        Stage.SEMANTIC,
+                        NodeUtils.getLine(node),
+                        NodeUtils.getColumn(node),
+                        "Can't do a while statement with array: " + node.getChildren(Kind.TYPE),
+                        null
+                ));
             }
         }
         return null;
     }
 
+    /**
+     * Groups, in one pass over the body, the assignments, declarations and while conditions of each variable, so that
+     * each declaration in it is checked without going through every statement again.
+     */
+    private void indexBody(JmmNode body) {
+        indexedBody = body;
+        bodyAssigns = new HashMap<>();
+        bodyListAssigns = new ArrayList<>();
+        bodyVarDecls = new HashMap<>();
+        whileConditionUses = new HashMap<>();
+        for (var child : body.getChildren()) {
+            if (Kind.I_D_ASSIGN_STMT.check(child)) {
+                if (Objects.equals(child.getChild(0).toString(), "List")) {
+                    bodyListAssigns.add(child);
+                }
+                bodyAssigns.computeIfAbsent(child.get("name"), name -> new ArrayList<>()).add(child);
+            } else if (Kind.VAR_DECL.check(child)) {
+                bodyVarDecls.computeIfAbsent(child.get("name"), name -> new ArrayList<>()).add(child);
+            } else if (Kind.WHILE_STMT.check(child)) {
+                for (var idExpr : child.getChildren(I_D_EXPR)) {
+                    whileConditionUses.merge(idExpr.get("name"), 1, Integer::sum);
+                }
+            }
+        }
+    }
+
     private Void ifElseStmt(JmmNode node, SymbolTable table){
         var condition = node.getChild(0);
         var locals = table.getLocalVariables(currentMethod);
@@ -397,22 +428,21 @@ public class TypeCheck extends AnalysisVisitor {
                 ));
             }
         }
-        if(condition.getKind().equals("BooleanExpr")){
+        if(!condition.getKind().equals("IDExpr")){
             return null;
         }
-        for (var local : locals) {
-            if (condition.get("name").equals(local.getName())) {
-                if (Objects.equals(local.getType().isArray(), true)) {
-                    addReport(Report.newError(
-                            Stage.SEMANTIC,
-                            NodeUtils.getLine(node),
-                            NodeUtils.getColumn(node),
-                            "Can't do an if statement with array! ",
-                            null
-                    ));
-                }
-                return null;
-            }
+        if (locals.isEmpty()) {
+            return null;
+        }
+        var local = resolveLocal(table, condition.get("name"));
+        if (local.isPresent() && local.get().getType().isArray()) {
+            addReport(Report.newError(
+                    Stage.SEMANTIC,
+                    NodeUtils.getLine(node),
+                    NodeUtils.getColumn(node),
+                    "Can't do an if statement with array! ",
+                    null
+            ));
         }
         return null;
     }
@@ -545,58 +575,37 @@ public class TypeCheck extends AnalysisVisitor {
                 ));
             }
         }
-        for (var local : locals) {
-            if ((leftKind.equals("IntegerExpr") || rightKind.equals("IntegerExpr"))) {
-                checkBinExprIdExpr(node, left, leftKind, local);
-                checkBinExprIdExpr(node, right, rightKind, local);
-            }
+        if ((leftKind.equals("IntegerExpr") || rightKind.equals("IntegerExpr"))) {
+            checkBinExprIdExpr(node, table, left, leftKind);
+            checkBinExprIdExpr(node, table, right, rightKind);
         }
         return null;
     }
 
-    private void checkBinExprIdExpr(JmmNode node, JmmNode left, String leftKind, Symbol local) {
+    private void checkBinExprIdExpr(JmmNode node, SymbolTable table, JmmNode left, String leftKind) {
         if (leftKind.equals("IDExpr")) {
-            if (left.get("name").equals(local.getName())) {
-                if (!Objects.equals(local.getType().getName(), "int")) {
-                    addReport(Report.newError(
-                            Stage.SEMANTIC,
-                            NodeUtils.getLine(node),
-                            NodeUtils.getColumn(node),
-                            "Incompatible types: " + "int" + " and " + local.getType().getName(),
-                            null
-                    ));
-                }
-
-            }
-        }
-    }
-
-    private boolean checkOperandTypes(JmmNode node, SymbolTable table, JmmNode right, String rightKind, String leftType) {
-        if (rightKind.equals("GetMethod")) {
-            var rightType = table.getReturnType(right.get("value")).getName();
-            if(Objects.equals(leftType, rightType)){
-                return true;
+            var local = resolveLocal(table, left.get("name"));
+            if (local.isPresent() && !Objects.equals(local.get().getType().getName(), "int")) {
+                addReport(Report.newError(
+                        Stage.SEMANTIC,
+                        NodeUtils.getLine(node),
+                        NodeUtils.getColumn(node),
+                        "Incompatible types: " + "int" + " and " + local.get().getType().getName(),
+                        null
+                ));
             }
-            addReport(Report.newError(
-                    Stage.SEMANTIC,
-                    NodeUtils.getLine(node),
-                    NodeUtils.getColumn(node),
-                    "Incompatible types: " + leftType + " and " + rightType,
-                    null
-            ));
         }
-        return false;
     }
 
     private Void arrayExpr(JmmNode node, SymbolTable table) {
-        var locals = table.getLocalVariables(currentMethod);
         var parent = node.getParent();
         var left = node.getChild(0);
-        var varDecls = parent.getParent().getChildren(Kind.VAR_DECL);
-        for (var varDecl : varDecls) {
-            var checkArray = varDecl.getChild(0).get("isArray");
-            System.out.println(checkArray);
-            if (Objects.equals(checkArray, "false") && Objects.equals(left.get("name"), varDecl.get("name"))) {
+        // only accesses in statements directly in the method body are checked against its locals
+        if (Kind.METHOD_DECL.check(parent.getParent())) {
+            var isLocalArray = left.getOptional("name")
+                    .flatMap(name -> resolveLocal(table, name))
+                    .map(local -> local.getType().isArray());
+            if (isLocalArray.isPresent() && !isLocalArray.get()) {
                 addReport(Report.newError(
                         Stage.SEMANTIC,
                         NodeUtils.getLine(node),
@@ -609,123 +618,16 @@ public class TypeCheck extends AnalysisVisitor {
         }
         var idexprs = node.getChildren(I_D_EXPR);
         for (var idexpr : idexprs) {
-            var idname = idexpr.get("name");
-            for (var local : locals) {
-                if (Objects.equals(local.getName(), idname) && !Objects.equals(local.getType().getName(), "int")) {
-                    addReport(Report.newError(
-                            Stage.SEMANTIC,
-                            NodeUtils.getLine(node),
-                            NodeUtils.getColumn(node),
-                            "Can't do an array expression with non int: " + node.getChildren(Kind.TYPE),
-                            null
-                    ));
-                }
-            }
-        }
-        return null;
-    }
-
-    private Void binTypes(JmmNode node, SymbolTable table) {
-
-        var left = node.getChild(0);
-        var right = node.getChild(1);
-        var locals = table.getLocalVariables(currentMethod);
-        var params = table.getParameters(currentMethod);
-        for (var param : params) {
-            if (Objects.equals(param.getName(), left.get("name")) && Objects.equals(param.getType().getName(), "int") && right.getKind().equals("ThisExpr")) {
-                var methods = table.getMethods();
-                if (methods.contains(node.getParent().get("value"))) {
-                    var retType = table.getReturnType(node.getParent().get("value"));
-                    if (retType.getName().equals("int")) {
-                        return null;
-                    }
-                    else {
-                        addReport(Report.newError(
-                                Stage.SEMANTIC,
-                                NodeUtils.getLine(node),
-                                NodeUtils.getColumn(node),
-                                "Incompatible types: " + "int" + " and " + retType,
-                                null
-                        ));
-
-                    }
-                }
-                return null;
-            }
-        }
-        String leftKind = left.getKind();
-        var rightKind = right.getKind();
-        if(leftKind.equals("IntegerExpr") || rightKind.equals("IntegerExpr")){
-            return null;
-        } else if (leftKind.equals("IDExpr")){
-            String leftType = "";
-            for(var local : locals){
-                if(Objects.equals(local.getName(), left.get("name"))){
-                    leftType = local.getType().getName();
-                    break;
-                }
-            }
-            if(leftType.isEmpty()) {
-                for (var param : params) {
-                    if (Objects.equals(param.getName(), left.get("name"))) {
-                        leftType = param.getType().getName();
-                        break;
-                    }
-                }
-                if(leftType.isEmpty()){
-                    addReport(Report.newError(
-                            Stage.SEMANTIC,
-                            NodeUtils.getLine(node),
-                            NodeUtils.getColumn(node),
-                            "Variable not defined: " + left.get("name"),
-                            null
-                    ));
-                }
-            }
-            if (rightKind.equals("IDExpr")){
-                String rightType = "";
-                for(var local : locals){
-                    if(Objects.equals(local.getName(), right.get("name"))){
-                        rightType = local.getType().getName();
-                    }
-                }
-                if(rightType.isEmpty()) {
-                    for (var param : params) {
-                        if (Objects.equals(param.getName(), right.get("name"))) {
-                            rightType = param.getType().getName();
-                        }
-                    }
-                    if(rightType.isEmpty()){
-                        addReport(Report.newError(
-                                Stage.SEMANTIC,
-                                NodeUtils.getLine(node),
-                                NodeUtils.getColumn(node),
-                                "Variable not defined: " + right.get("name"),
-                                null
-                        ));
-                    }
-                }
-                if(Objects.equals(leftType, rightType)){
-                    return null;
-                }
+            var local = resolveLocal(table, idexpr.get("name"));
+            if (local.isPresent() && !Objects.equals(local.get().getType().getName(), "int")) {
                 addReport(Report.newError(
                         Stage.SEMANTIC,
                         NodeUtils.getLine(node),
                         NodeUtils.getColumn(node),
-                        "Incompatible types: " + leftType + " and " + rightType,
+                        "Can't do an array expression with non int: " + node.getChildren(Kind.TYPE),
                         null
                 ));
             }
-            else if (checkOperandTypes(node, table, right, rightKind, leftType)) return null;
-
-        } else {
-            addReport(Report.newError(
-                    Stage.SEMANTIC,
-                    NodeUtils.getLine(node),
-                    NodeUtils.getColumn(node),
-                    "Incompatible types: " + leftKind + " and " + rightKind,
-                    null
-            ));
         }
         return null;
     }
@@ -782,27 +684,26 @@ public class TypeCheck extends AnalysisVisitor {
             }
         }
         var locals = table.getLocalVariables(currentMethod);
-        // check for duplicated local variables
-        for (int i = 0; i < locals.size(); i++) {
-            for (int j = i + 1; j < locals.size(); j++) {
-                if(locals.get(j).getType().getName().equals("int...")){
-                    addReport(Report.newError(
-                            Stage.SEMANTIC,
-                            NodeUtils.getLine(node),
-                            NodeUtils.getColumn(node),
-                            "Varargs not allowed in local variables",
-                            null
-                    ));
-                }
-                if (Objects.equals(locals.get(i).getName(), locals.get(j).getName())) {
-                    addReport(Report.newError(
-                            Stage.SEMANTIC,
-                            NodeUtils.getLine(node),
-                            NodeUtils.getColumn(node),
-                            "Duplicated local variables: " + locals.get(i).getName() + " and " + locals.get(j).getName(),
-                            null
-                    ));
-                }
+        // check for varargs and duplicated local variables, in one pass over the locals
+        Set<String> localNames = new HashSet<>();
+        for (var local : locals) {
+            if (local.getType().getName().equals("int...")) {
+                addReport(Report.newError(
+                        Stage.SEMANTIC,
+                        NodeUtils.getLine(node),
+                        NodeUtils.getColumn(node),
+                        "Varargs not allowed in local variables",
+                        null
+                ));
+            }
+            if (!localNames.add(local.getName())) {
+                addReport(Report.newError(
+                        Stage.SEMANTIC,
+                        NodeUtils.getLine(node),
+                        NodeUtils.getColumn(node),
+                        "Duplicated local variables: " + local.getName() + " and " + local.getName(),
+                        null
+                ));
             }
         }
 
@@ -815,22 +716,14 @@ public class TypeCheck extends AnalysisVisitor {
         var varNames = node.getChildren(I_D_EXPR);
         if (!varNames.isEmpty()) {
             var varName = varNames.get(0).get("name");
-            for (var imp : table.getImports()) {
-                if (varName.equals(imp)) {
-                    return null;
-                }
-                for (var field : table.getFields()) {
-                    if (Objects.equals(field.getName(), varName) && Objects.equals(field.getType().getName(), imp))
-                        return null;
-                }
-                for (var param : table.getParameters(currentMethod)) {
-                    if (Objects.equals(param.getName(), varName) && Objects.equals(param.getType().getName(), imp))
-                        return null;
-                }
-                for (var local : table.getLocalVariables(currentMethod)) {
-                    if (Objects.equals(local.getName(), varName) && Objects.equals(local.getType().getName(), imp))
-                        return null;
-                }
+            var imports = table.getImports();
+            if (imports.contains(varName)) {
+                return null;
+            }
+            // the method is called on a variable of an imported class
+            var varType = TypeUtils.resolveVar(currentMethod, varName, table).map(symbol -> symbol.getType().getName());
+            if (varType.isPresent() && imports.contains(varType.get())) {
+                return null;
             }
 
             if (!methods.contains(methodName) && Objects.equals(table.getSuper(), null)) {
@@ -844,26 +737,23 @@ public class TypeCheck extends AnalysisVisitor {
             }
         }
 
-        var locals = table.getLocalVariables(currentMethod);
         if (methods.contains(methodName)) {
             var methodParams = table.getParameters(methodName);
             var args = node.getChildren(I_D_EXPR);
-            for (Symbol param : methodParams) {
-                var paramType = param.getType().getName();
-                if (!args.isEmpty()) {
-                    var arg = args.get(args.size() - 1);
-                    for (Symbol local : locals) {
-                        if (Objects.equals(local.getName(), arg.get("name"))) {
-                            if (!Objects.equals(local.getType().getName(), paramType)) {
-                                addReport(Report.newError(
-                                        Stage.SEMANTIC,
-                                        NodeUtils.getLine(node),
-                                        NodeUtils.getColumn(node),
-                                        "Incompatible types: " + local.getType().getName() + " and " + paramType,
-                                        null
-                                ));
-                            }
-                        }
+            var local = args.isEmpty() ? Optional.<ScopedSymbol>empty()
+                    : resolveLocal(table, args.get(args.size() - 1).get("name"));
+            if (local.isPresent()) {
+                var localType = local.get().getType().getName();
+                for (Symbol param : methodParams) {
+                    var paramType = param.getType().getName();
+                    if (!Objects.equals(localType, paramType)) {
+                        addReport(Report.newError(
+                                Stage.SEMANTIC,
+                                NodeUtils.getLine(node),
+                                NodeUtils.getColumn(node),
+                                "Incompatible types: " + localType + " and " + paramType,
+                                null
+                        ));
                     }
                 }
             }
@@ -871,4 +761,12 @@ public class TypeCheck extends AnalysisVisitor {
 
         return null;
     }
+
+    private Optional<ScopedSymbol> resolveLocal(SymbolTable table, String name) {
+        return TypeUtils.resolveVar(currentMethod, name, table).filter(ScopedSymbol::isLocal);
+    }
+
+    private Optional<ScopedSymbol> resolveLocalOrParam(SymbolTable table, String name) {
+        return TypeUtils.resolveVar(currentMethod, name, table).filter(symbol -> !symbol.isField());
+    }
 }
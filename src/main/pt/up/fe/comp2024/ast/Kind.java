@@ -4,7 +4,9 @@ import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.specs.util.SpecsStrings;
 
 import java.util.Arrays;
+import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 public enum Kind {
     PROGRAM,
@@ -31,12 +33,21 @@ public enum Kind {
     IF_ELSE_STMT,
     BINARY_BOOL_EXPR,
     I_D_CURLY_ASSIGN_STMT,
-    NEW_INT;
+    NEW_INT,
+    CURLY_STMT,
+    NOT_EXPR,
+    PARENTHESIS_EXPR,
+    RETURN_TYPE,
+    GET_LENGTH,
+    LIST;
 
 
     private static final Set<Kind> STATEMENTS = Set.of(I_D_ASSIGN_STMT, RETURN_STMT, I_D_CURLY_ASSIGN_STMT);
     private static final Set<Kind> EXPRESSIONS = Set.of(BINARY_EXPR, INTEGER_LITERAL, I_D_EXPR);
 
+    private static final Map<String, Kind> BY_NODE_NAME = Arrays.stream(values())
+            .collect(Collectors.toMap(Kind::getNodeName, kind -> kind));
+
     private final String name;
 
     private Kind(String name) {
@@ -48,13 +59,29 @@ public enum Kind {
     }
 
     public static Kind fromString(String kind) {
+        var k = BY_NODE_NAME.get(kind);
 
-        for (Kind k : Kind.values()) {
-            if (k.getNodeName().equals(kind)) {
-                return k;
-            }
+        if (k == null) {
+            throw new RuntimeException("Could not convert string '" + kind + "' to a Kind");
         }
-        throw new RuntimeException("Could not convert string '" + kind + "' to a Kind");
+
+        return k;
+    }
+
+    /**
+     * @param kind
+     * @return the Kind with the given node name, or null if there is none
+     */
+    public static Kind fromStringOrNull(String kind) {
+        return BY_NODE_NAME.get(kind);
+    }
+
+    /**
+     * @param node
+     * @return the Kind of the node, or null if its kind is not a Kind
+     */
+    public static Kind of(JmmNode node) {
+        return BY_NODE_NAME.get(node.getKind());
     }
 
     public String getNodeName() {
@@ -87,7 +114,7 @@ public enum Kind {
      * @return
      */
     public boolean check(JmmNode node) {
-        return node.getKind().equals(getNodeName());
+        return of(node) == this;
     }
 
     /**
@@ -0,0 +1,49 @@
+package pt.up.fe.comp2024.ast;
+
+import pt.up.fe.comp.jmm.ast.AJmmVisitor;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+
+import java.util.function.BiFunction;
+
+/**
+ * {@link AJmmVisitor} that finds the visit method of a node through a {@link KindVisitTable}.
+ * <p>
+ * Visits are only found by {@link Kind}: nodes whose kind has no visit method get the default visit, without looking
+ * at the rest of their hierarchy. Registering a visit for a kind that is not a Kind throws.
+ */
+public abstract class KindJmmVisitor<D, R> extends AJmmVisitor<D, R> {
+
+    // created on first use, since the super constructor calls buildVisitor before the fields of this class are set
+    private KindVisitTable<D, R> visitTable;
+
+    private KindVisitTable<D, R> getVisitTable() {
+        if (visitTable == null) {
+            visitTable = new KindVisitTable<>();
+        }
+
+        return visitTable;
+    }
+
+    @Override
+    public void addVisit(String kind, BiFunction<JmmNode, D, R> method) {
+        getVisitTable().put(kind, method);
+    }
+
+    @Override
+    public void setDefaultVisit(BiFunction<JmmNode, D, R> defaultVisit) {
+        getVisitTable().setDefault(defaultVisit);
+    }
+
+    @Override
+    protected BiFunction<JmmNode, D, R> getVisit(JmmNode node) {
+        return getVisitTable().get(node);
+    }
+
+    /**
+     * @param kind
+     * @return the visit method registered for the kind, or null if there is none
+     */
+    public BiFunction<JmmNode, D, R> getVisit(Kind kind) {
+        return getVisitTable().get(kind);
+    }
+}
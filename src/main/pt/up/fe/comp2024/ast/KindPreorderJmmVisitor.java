@@ -0,0 +1,22 @@
+package pt.up.fe.comp2024.ast;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.PreorderJmmVisitor;
+
+/**
+ * {@link KindJmmVisitor} with the traversal of a {@link PreorderJmmVisitor} without a reduce function: visits the node,
+ * then its children, and returns the result of the node.
+ */
+public abstract class KindPreorderJmmVisitor<D, R> extends KindJmmVisitor<D, R> {
+
+    @Override
+    public R visit(JmmNode jmmNode, D data) {
+        var nodeResult = super.visit(jmmNode, data);
+
+        for (var child : jmmNode.getChildren()) {
+            visit(child, data);
+        }
+
+        return nodeResult;
+    }
+}
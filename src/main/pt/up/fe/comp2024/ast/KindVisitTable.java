@@ -0,0 +1,72 @@
+package pt.up.fe.comp2024.ast;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.specs.util.SpecsCheck;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * Visit methods indexed by the ordinal of the {@link Kind} of the node, used by {@link KindJmmVisitor} instead of
+ * looking them up by the node kind string.
+ * <p>
+ * Nodes whose kind has no visit method, or is not a Kind, get the default visit.
+ */
+public class KindVisitTable<D, R> {
+
+    private final List<BiFunction<JmmNode, D, R>> visits;
+
+    private BiFunction<JmmNode, D, R> defaultVisit;
+
+    public KindVisitTable() {
+        visits = new ArrayList<>(Collections.nCopies(Kind.values().length, null));
+    }
+
+    /**
+     * @param kind
+     * @param method
+     * @throws IllegalArgumentException if the kind is not a {@link Kind}
+     */
+    public void put(String kind, BiFunction<JmmNode, D, R> method) {
+        var k = Kind.fromStringOrNull(kind);
+
+        if (k == null) {
+            throw new IllegalArgumentException("Could not add visit for '" + kind + "', it is not a Kind");
+        }
+
+        visits.set(k.ordinal(), method);
+    }
+
+    public void setDefault(BiFunction<JmmNode, D, R> defaultVisit) {
+        this.defaultVisit = defaultVisit;
+    }
+
+    /**
+     * @param kind
+     * @return the visit method for the kind, or null if there is none
+     */
+    public BiFunction<JmmNode, D, R> get(Kind kind) {
+        return visits.get(kind.ordinal());
+    }
+
+    /**
+     * @param node
+     * @return the visit method for the kind of the node, or the default visit if there is none
+     */
+    public BiFunction<JmmNode, D, R> get(JmmNode node) {
+        var k = Kind.of(node);
+        var visit = k == null ? null : get(k);
+
+        if (visit != null) {
+            return visit;
+        }
+
+        SpecsCheck.checkNotNull(defaultVisit,
+                () -> "Could not find a suitable visit method for node of kind " + node.getKind()
+                        + ", and no default visitor is set");
+
+        return defaultVisit;
+    }
+}
@@ -0,0 +1,141 @@
+package pt.up.fe.comp2024.ast;
+
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Identifies the code of a method, so that the results of analysing and generating an unchanged method can be reused
+ * when its class is compiled again.
+ * <p>
+ * The key is a hash of the structure of the method subtree (kinds, attributes and children) together with the
+ * signature of the class in the symbol table (imports, super class, fields and method signatures), which is everything
+ * the checks and the code of a method depend on. Lines are hashed relative to the first line of the method, so moving
+ * a method does not change its key; results with lines must be shifted with {@link #getBaseLine(JmmNode)}.
+ * <p>
+ * Keys are not stored on the AST: {@link #get(JmmNode)} hashes the subtree as it is when called, so a method that was
+ * changed after the analysis (e.g. by constant propagation) gets a new key.
+ */
+public class MethodKey {
+
+    private static final String LINE_START = "lineStart";
+    private static final String LINE_END = "lineEnd";
+
+    // computed from the subtree, so they are not part of it
+    private static final Set<String> DERIVED_ATTRIBUTES = Set.of(TypeUtils.TYPE_ATTRIBUTE, TypeUtils.METHOD_ATTRIBUTE);
+
+    private final String signature;
+
+    /**
+     * @param table the symbol table of the class of the methods
+     */
+    public MethodKey(SymbolTable table) {
+        this.signature = getSignature(table);
+    }
+
+    /**
+     * @param method
+     * @return the key of the method, as its subtree is now
+     */
+    public String get(JmmNode method) {
+        var digest = newDigest();
+        update(digest, signature);
+        hashSubtree(method, getBaseLine(method), digest);
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * @param method
+     * @return the line the lines of the method are relative to in its key
+     */
+    public static int getBaseLine(JmmNode method) {
+        return NodeUtils.getLine(method);
+    }
+
+    private static void hashSubtree(JmmNode node, int baseLine, MessageDigest digest) {
+        update(digest, node.getKind());
+
+        // attributes are kept in a hash map, so they are hashed in a fixed order
+        var attributes = node.getAttributes().stream()
+                .filter(attribute -> !DERIVED_ATTRIBUTES.contains(attribute))
+                .sorted()
+                .toList();
+
+        for (var attribute : attributes) {
+            update(digest, attribute);
+
+            var value = node.get(attribute);
+            if (attribute.equals(LINE_START) || attribute.equals(LINE_END)) {
+                value = String.valueOf(Integer.parseInt(value) - baseLine);
+            }
+            update(digest, value);
+        }
+
+        update(digest, String.valueOf(node.getNumChildren()));
+        for (var child : node.getChildren()) {
+            hashSubtree(child, baseLine, digest);
+        }
+    }
+
+    private static String getSignature(SymbolTable table) {
+        var signature = new StringBuilder();
+
+        signature.append(table.getClassName()).append(" extends ").append(table.getSuper()).append('\n');
+        table.getImports().forEach(imported -> signature.append("import ").append(imported).append('\n'));
+        appendSymbols("field", table.getFields(), signature);
+
+        for (var method : table.getMethods()) {
+            signature.append("method ").append(method).append(' ');
+            appendType(table.getReturnType(method), signature);
+            signature.append('\n');
+            appendSymbols("param", table.getParameters(method), signature);
+        }
+
+        return signature.toString();
+    }
+
+    private static void appendSymbols(String prefix, List<Symbol> symbols, StringBuilder signature) {
+        for (var symbol : symbols) {
+            signature.append(prefix).append(' ').append(symbol.getName()).append(' ');
+            appendType(symbol.getType(), signature);
+            signature.append('\n');
+        }
+    }
+
+    private static void appendType(Type type, StringBuilder signature) {
+        if (type == null) {
+            signature.append("?");
+            return;
+        }
+
+        signature.append(type.getName()).append(type.isArray() ? "[]" : "");
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+
+        // length first, so that different splits of the same characters do not collide
+        digest.update((byte) (bytes.length >>> 24));
+        digest.update((byte) (bytes.length >>> 16));
+        digest.update((byte) (bytes.length >>> 8));
+        digest.update((byte) bytes.length);
+        digest.update(bytes);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -1,8 +1,14 @@
 package pt.up.fe.comp2024.ast;
 
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
+import pt.up.fe.comp2024.symboltable.ScopedSymbol;
+
+import java.util.List;
+import java.util.Optional;
 
 public class TypeUtils {
 
@@ -11,6 +17,12 @@ public class TypeUtils {
     private static final String OBJECT_TYPE_NAME = "Object";
     private static final String PARAMETERS_TYPE_NAME = "Parameters";
 
+    /**
+     * Attributes set on expression nodes by {@link pt.up.fe.comp2024.analysis.ExprTypeAnnotator}.
+     */
+    public static final String TYPE_ATTRIBUTE = "exprType";
+    public static final String METHOD_ATTRIBUTE = "enclosingMethod";
+
     public static String getIntTypeName() {
         return INT_TYPE_NAME;
     }
@@ -27,25 +39,69 @@ public class TypeUtils {
         return PARAMETERS_TYPE_NAME;
     }
 
+    /**
+     * @param name
+     * @param isArray
+     * @param table
+     * @return the instance of the given type shared by the table and the expressions of its class, or a new instance
+     * if the table is not a {@link JmmSymbolTable}
+     */
+    public static Type getType(String name, boolean isArray, SymbolTable table) {
+        if (table instanceof JmmSymbolTable jmmTable) {
+            return jmmTable.getType(name, isArray);
+        }
+
+        return new Type(name, isArray);
+    }
+
+    /**
+     * @return the instance of the given type shared by the table and the expressions of its class
+     */
+    public static Type getType(Type type, SymbolTable table) {
+        return getType(type.getName(), type.isArray(), table);
+    }
+
     /**
      * Gets the {@link Type} of an arbitrary expression.
+     * <p>
+     * Returns the type stored on the node by {@link pt.up.fe.comp2024.analysis.ExprTypeAnnotator} when there is one,
+     * and computes it otherwise.
      *
      * @param expr
      * @param table
      * @return
      */
     public static Type getExprType(JmmNode expr, SymbolTable table) {
+        var annotated = expr.getOptionalObject(TYPE_ATTRIBUTE);
+        if (annotated.isPresent()) {
+            return (Type) annotated.get();
+        }
+
+        return computeExprType(expr, table);
+    }
+
+    /**
+     * Computes the {@link Type} of an expression, ignoring the type stored on the node.
+     *
+     * @param expr
+     * @param table
+     * @return
+     */
+    public static Type computeExprType(JmmNode expr, SymbolTable table) {
         // TODO: Simple implementation that needs to be expanded
 
-        var kind = Kind.fromString(expr.getKind());
+        var kind = Kind.of(expr);
+        if (kind == null) {
+            throw new RuntimeException("Could not convert string '" + expr.getKind() + "' to a Kind");
+        }
 
         Type type = switch (kind) {
-            case BINARY_EXPR -> getBinExprType(expr);
+            case BINARY_EXPR -> getBinExprType(expr, table);
             case I_D_EXPR -> getVarExprType(expr, table);
-            case INTEGER_EXPR -> new Type(INT_TYPE_NAME, false);
-            case BOOLEAN_EXPR -> new Type("boolean", false);
-            case GET_METHOD -> table.getReturnType(expr.get("name"));
-            case BINARY_BOOL_EXPR -> new Type("boolean", false);
+            case INTEGER_EXPR -> getType(INT_TYPE_NAME, false, table);
+            case BOOLEAN_EXPR -> getType(BOOLEAN_TYPE_NAME, false, table);
+            case GET_METHOD -> table.getReturnType(expr.get("value"));
+            case BINARY_BOOL_EXPR -> getType(BOOLEAN_TYPE_NAME, false, table);
 
             default -> throw new UnsupportedOperationException("Can't compute type for expression kind '" + kind + "'");
         };
@@ -53,13 +109,30 @@ public class TypeUtils {
         return type;
     }
 
-    private static Type getBinExprType(JmmNode binaryExpr) {
+    /**
+     * @param node a node inside a method
+     * @return the name of the method that contains the node
+     */
+    public static String getEnclosingMethod(JmmNode node) {
+        var annotated = node.getOptionalObject(METHOD_ATTRIBUTE);
+        if (annotated.isPresent()) {
+            return (String) annotated.get();
+        }
+
+        JmmNode parent = node.getParent();
+        while(!parent.getKind().equals("MethodDecl")){
+            parent = parent.getParent();
+        }
+        return parent.get("name");
+    }
+
+    private static Type getBinExprType(JmmNode binaryExpr, SymbolTable table) {
         // TODO: Simple implementation that needs to be expanded
 
         String operator = binaryExpr.get("op");
 
         return switch (operator) {
-            case "+", "-", "/", "*" -> new Type(INT_TYPE_NAME, false);
+            case "+", "-", "/", "*" -> getType(INT_TYPE_NAME, false, table);
             default ->
                     throw new RuntimeException("Unknown operator '" + operator + "' of expression '" + binaryExpr + "'");
         };
@@ -68,27 +141,38 @@ public class TypeUtils {
 
     private static Type getVarExprType(JmmNode varRefExpr, SymbolTable table) {
         var name = varRefExpr.get("name");
-        JmmNode parent = varRefExpr.getParent();
-        while(!parent.getKind().equals("MethodDecl")){
-            parent = parent.getParent();
-        }
-        var methodName = parent.get("name");
-        for(var local : table.getLocalVariables(methodName)){
-            if(local.getName().equals(name)){
-                return new Type(local.getType().getName(), local.getType().isArray());
-            }
-        }
-        for(var param : table.getParameters(methodName)){
-            if(param.getName().equals(name)){
-                return new Type(param.getType().getName(), param.getType().isArray());
-            }
-        }
-        for(var field : table.getFields()){
-            if(field.getName().equals(name)){
-                return new Type(field.getType().getName(), field.getType().isArray());
-            }
+        var methodName = getEnclosingMethod(varRefExpr);
+
+        return resolveVar(methodName, name, table)
+                .map(symbol -> getType(symbol.getType(), table))
+                .orElse(getType(INT_TYPE_NAME, false, table));
+    }
+
+    /**
+     * Finds the local, parameter or field a name refers to inside a method, in that order.
+     * <p>
+     * Uses the index of {@link JmmSymbolTable} when available, and searches the lists of the table otherwise.
+     *
+     * @param methodName
+     * @param name
+     * @param table
+     * @return the variable, or an empty Optional if there is no variable with that name
+     */
+    public static Optional<ScopedSymbol> resolveVar(String methodName, String name, SymbolTable table) {
+        if (table instanceof JmmSymbolTable jmmTable) {
+            return jmmTable.resolve(methodName, name);
         }
-        return new Type(INT_TYPE_NAME, false);
+
+        return find(table.getLocalVariables(methodName), name, ScopedSymbol.Origin.LOCAL)
+                .or(() -> find(table.getParameters(methodName), name, ScopedSymbol.Origin.PARAM))
+                .or(() -> find(table.getFields(), name, ScopedSymbol.Origin.FIELD));
+    }
+
+    private static Optional<ScopedSymbol> find(List<Symbol> symbols, String name, ScopedSymbol.Origin origin) {
+        return symbols.stream()
+                .filter(symbol -> symbol.getName().equals(name))
+                .findFirst()
+                .map(symbol -> new ScopedSymbol(symbol, origin));
     }
 
 
@@ -0,0 +1,38 @@
+package pt.up.fe.comp2024.backend;
+
+import org.specs.comp.ollir.ElementType;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.VarScope;
+
+/**
+ * Helpers shared by the Jasmin and the class file backends.
+ */
+class BackendUtils {
+
+    private BackendUtils() {
+    }
+
+    /**
+     * The number of registers of a method, one more than the highest register of its var table. Registers may be
+     * shared by several variables after register allocation, so this is not the size of the var table.
+     *
+     * @param method
+     * @return
+     */
+    static int getLocalsLimit(Method method) {
+        // 'this' and the parameters always have a register, even if they are not used
+        int locals = method.getParams().size() + (method.isStaticMethod() ? 0 : 1);
+
+        for (var descriptor : method.getVarTable().values()) {
+            // fields and the names of classes in static calls are not stored in registers
+            if (descriptor.getScope() == VarScope.FIELD
+                    || descriptor.getVarType().getTypeOfElement() == ElementType.CLASS) {
+                continue;
+            }
+
+            locals = Math.max(locals, descriptor.getVirtualReg() + 1);
+        }
+
+        return locals;
+    }
+}
@@ -0,0 +1,257 @@
+package pt.up.fe.comp2024.backend;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bytecode of a single method, as it is being emitted.
+ * <p>
+ * Keeps the current and maximum depth of the operand stack, given by the stack effect of each instruction. Branches
+ * refer to labels by name, and their offsets are patched in {@link #getCode()}, once every label is bound.
+ */
+class BytecodeBuffer {
+
+    static final int ICONST_0 = 0x03;
+    static final int ICONST_1 = 0x04;
+    static final int BIPUSH = 0x10;
+    static final int SIPUSH = 0x11;
+    static final int LDC = 0x12;
+    static final int LDC_W = 0x13;
+    static final int ILOAD = 0x15;
+    static final int ALOAD = 0x19;
+    static final int ILOAD_0 = 0x1a;
+    static final int ALOAD_0 = 0x2a;
+    static final int IALOAD = 0x2e;
+    static final int AALOAD = 0x32;
+    static final int ISTORE = 0x36;
+    static final int ASTORE = 0x3a;
+    static final int ISTORE_0 = 0x3b;
+    static final int ASTORE_0 = 0x4b;
+    static final int IASTORE = 0x4f;
+    static final int AASTORE = 0x53;
+    static final int POP = 0x57;
+    static final int IADD = 0x60;
+    static final int ISUB = 0x64;
+    static final int IMUL = 0x68;
+    static final int IDIV = 0x6c;
+    static final int ISHL = 0x78;
+    static final int ISHR = 0x7a;
+    static final int IUSHR = 0x7c;
+    static final int IAND = 0x7e;
+    static final int IOR = 0x80;
+    static final int IXOR = 0x82;
+    static final int IINC = 0x84;
+    static final int IFEQ = 0x99;
+    static final int IFNE = 0x9a;
+    static final int IFLT = 0x9b;
+    static final int IFGE = 0x9c;
+    static final int IFGT = 0x9d;
+    static final int IFLE = 0x9e;
+    static final int IF_ICMPEQ = 0x9f;
+    static final int IF_ICMPNE = 0xa0;
+    static final int IF_ICMPLT = 0xa1;
+    static final int IF_ICMPGE = 0xa2;
+    static final int IF_ICMPGT = 0xa3;
+    static final int IF_ICMPLE = 0xa4;
+    static final int GOTO = 0xa7;
+    static final int IRETURN = 0xac;
+    static final int ARETURN = 0xb0;
+    static final int RETURN = 0xb1;
+    static final int GETFIELD = 0xb4;
+    static final int PUTFIELD = 0xb5;
+    static final int INVOKEVIRTUAL = 0xb6;
+    static final int INVOKESPECIAL = 0xb7;
+    static final int INVOKESTATIC = 0xb8;
+    static final int NEW = 0xbb;
+    static final int NEWARRAY = 0xbc;
+    static final int ANEWARRAY = 0xbd;
+    static final int ARRAYLENGTH = 0xbe;
+    static final int WIDE = 0xc4;
+
+    static final int T_INT = 10;
+    static final int T_BOOLEAN = 4;
+
+    private static final int MAX_CODE_LENGTH = 0xFFFF;
+
+    private record Jump(int opcodeOffset, int patchOffset, String label) {
+    }
+
+    private final ConstantPool pool;
+    private final ByteArrayOutputStream code;
+    private final Map<String, Integer> labels;
+    private final List<Jump> jumps;
+
+    private int stack;
+    private int maxStack;
+    private int nextLabel;
+
+    BytecodeBuffer(ConstantPool pool) {
+        this.pool = pool;
+        this.code = new ByteArrayOutputStream();
+        this.labels = new HashMap<>();
+        this.jumps = new ArrayList<>();
+        this.stack = 0;
+        this.maxStack = 0;
+        this.nextLabel = 0;
+    }
+
+    int getStack() {
+        return stack;
+    }
+
+    int getMaxStack() {
+        return maxStack;
+    }
+
+    /**
+     * Sets the depth of the stack, for code that is only reached by a jump (e.g. after a 'goto').
+     *
+     * @param depth
+     */
+    void setStack(int depth) {
+        stack = depth;
+    }
+
+    private void adjustStack(int delta) {
+        stack += delta;
+        if (stack < 0) {
+            throw new IllegalStateException("Operand stack underflow at offset " + code.size());
+        }
+
+        maxStack = Math.max(maxStack, stack);
+    }
+
+    /**
+     * @param opcode
+     * @param stackDelta how many values the instruction pushes, minus how many it pops
+     */
+    void op(int opcode, int stackDelta) {
+        code.write(opcode);
+        adjustStack(stackDelta);
+    }
+
+    void opU1(int opcode, int operand, int stackDelta) {
+        code.write(opcode);
+        code.write(operand);
+        adjustStack(stackDelta);
+    }
+
+    void opU2(int opcode, int operand, int stackDelta) {
+        code.write(opcode);
+        writeU2(operand);
+        adjustStack(stackDelta);
+    }
+
+    private void writeU2(int value) {
+        code.write(value >>> 8);
+        code.write(value);
+    }
+
+    void pushInt(int value) {
+        if (value >= -1 && value <= 5) {
+            op(ICONST_0 + value, 1);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            opU1(BIPUSH, value, 1);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            opU2(SIPUSH, value, 1);
+        } else {
+            int index = pool.integer(value);
+            if (index <= 0xFF) {
+                opU1(LDC, index, 1);
+            } else {
+                opU2(LDC_W, index, 1);
+            }
+        }
+    }
+
+    /**
+     * @param longOpcode  the form with the register as operand (e.g. iload)
+     * @param shortOpcode the form for register 0, followed by the forms for registers 1 to 3 (e.g. iload_0)
+     * @param register
+     * @param stackDelta
+     */
+    void local(int longOpcode, int shortOpcode, int register, int stackDelta) {
+        if (register <= 3) {
+            op(shortOpcode + register, stackDelta);
+        } else if (register <= 0xFF) {
+            opU1(longOpcode, register, stackDelta);
+        } else {
+            code.write(WIDE);
+            opU2(longOpcode, register, stackDelta);
+        }
+    }
+
+    /**
+     * Adds a constant to an int register, without using the stack.
+     *
+     * @param register
+     * @param amount
+     */
+    void iinc(int register, int amount) {
+        if (register <= 0xFF && amount >= Byte.MIN_VALUE && amount <= Byte.MAX_VALUE) {
+            code.write(IINC);
+            code.write(register);
+            code.write(amount);
+        } else {
+            code.write(WIDE);
+            code.write(IINC);
+            writeU2(register);
+            writeU2(amount);
+        }
+    }
+
+    /**
+     * @return a name for a label of the generated code, which never clashes with a label of OLLIR
+     */
+    String newLabel() {
+        return "#" + nextLabel++;
+    }
+
+    void bind(String label) {
+        if (labels.putIfAbsent(label, code.size()) != null) {
+            throw new IllegalStateException("Label '" + label + "' is bound twice");
+        }
+    }
+
+    /**
+     * @param opcode     a branch with a 16-bit offset
+     * @param label
+     * @param stackDelta
+     */
+    void jump(int opcode, String label, int stackDelta) {
+        jumps.add(new Jump(code.size(), code.size() + 1, label));
+        opU2(opcode, 0, stackDelta);
+    }
+
+    /**
+     * @return the bytecode, with the offsets of every branch
+     */
+    byte[] getCode() {
+        if (code.size() > MAX_CODE_LENGTH) {
+            throw new RuntimeException("Method is too large, has " + code.size() + " bytes of code but the limit is "
+                    + MAX_CODE_LENGTH);
+        }
+
+        var bytes = code.toByteArray();
+
+        for (var jump : jumps) {
+            var target = labels.get(jump.label());
+            if (target == null) {
+                throw new RuntimeException("Jump to unknown label '" + jump.label() + "'");
+            }
+
+            int offset = target - jump.opcodeOffset();
+            if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                throw new RuntimeException("Jump to label '" + jump.label() + "' is too far, offset is " + offset);
+            }
+
+            bytes[jump.patchOffset()] = (byte) (offset >>> 8);
+            bytes[jump.patchOffset() + 1] = (byte) offset;
+        }
+
+        return bytes;
+    }
+}
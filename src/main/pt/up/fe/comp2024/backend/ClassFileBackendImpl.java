@@ -0,0 +1,33 @@
+package pt.up.fe.comp2024.backend;
+
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.StageStats;
+
+/**
+ * Backend that writes the class file directly, instead of Jasmin code that has to be assembled, see
+ * {@link ClassFileGenerator}.
+ */
+public class ClassFileBackendImpl {
+
+    private final StageStats stats;
+
+    /**
+     * @param stats where the stages of the backend are recorded
+     */
+    public ClassFileBackendImpl(StageStats stats) {
+        this.stats = stats;
+    }
+
+    public ClassFileBackendImpl() {
+        this(new StageStats());
+    }
+
+    public ClassFileResult toClassFile(OllirResult ollirResult) {
+
+        var classFileGenerator = stats.measure("cfg", () -> new ClassFileGenerator(ollirResult));
+        var classFile = stats.measure("build", classFileGenerator::build);
+
+        return new ClassFileResult(ollirResult, classFile, classFileGenerator.getReports());
+    }
+
+}
@@ -0,0 +1,634 @@
+package pt.up.fe.comp2024.backend;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.utils.VerboseLog;
+import pt.up.fe.specs.util.exceptions.NotImplementedException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates a JVM class file from an OllirResult, without going through Jasmin.
+ * <p>
+ * The code of each method is emitted directly as bytecode, with the same registers as the Jasmin backend (the virtual
+ * registers of the OLLIR var table). The maximum depth of the stack is computed while emitting, and branches are
+ * patched once the method is complete. Class files are generated with version 49 (Java 5), which the JVM verifies by
+ * type inference, so no StackMapTable is needed.
+ * <p>
+ * One ClassFileGenerator instance per OllirResult.
+ */
+public class ClassFileGenerator {
+
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int MAJOR_VERSION = 49;
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_PRIVATE = 0x0002;
+    private static final int ACC_PROTECTED = 0x0004;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+    private static final int ACC_VARARGS = 0x0080;
+
+    private static final String OBJECT_CLASS = "java/lang/Object";
+    private static final String CONSTRUCTOR = "<init>";
+
+    private final OllirResult ollirResult;
+
+    private final List<Report> reports;
+
+    private byte[] classFile;
+
+    private ConstantPool pool;
+
+    private Method currentMethod;
+
+    private BytecodeBuffer code;
+
+    private InstructionSelector selector;
+
+    public ClassFileGenerator(OllirResult ollirResult) {
+        this.ollirResult = ollirResult;
+        VerboseLog.print(ollirResult.getConfig(), VerboseLog.DUMPS, ollirResult::getOllirCode);
+
+        try {
+            ollirResult.getOllirClass().checkMethodLabels();
+            ollirResult.getOllirClass().buildCFGs();
+            ollirResult.getOllirClass().buildVarTables();
+        } catch (OllirErrorException e) {
+            throw new RuntimeException(e);
+        }
+
+        this.reports = new ArrayList<>();
+        this.classFile = null;
+    }
+
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    public String getClassName() {
+        return ollirResult.getOllirClass().getClassName();
+    }
+
+    public byte[] build() {
+
+        // This way, build is idempotent
+        if (classFile == null) {
+            classFile = generateClassUnit(ollirResult.getOllirClass());
+        }
+
+        return classFile;
+    }
+
+    private byte[] generateClassUnit(ClassUnit classUnit) {
+        pool = new ConstantPool();
+
+        // the constant pool comes first in the file, but is only complete after the methods
+        var body = new ByteArrayOutputStream();
+        try (var out = new DataOutputStream(body)) {
+            out.writeShort(getAccessFlags(classUnit.getClassAccessModifier()) | ACC_SUPER);
+            out.writeShort(pool.classRef(classUnit.getClassName()));
+            out.writeShort(pool.classRef(getSuperClass()));
+
+            // interfaces
+            out.writeShort(0);
+
+            out.writeShort(classUnit.getNumFields());
+            for (var field : classUnit.getFields()) {
+                generateField(field, out);
+            }
+
+            out.writeShort(classUnit.getNumMethods());
+            for (var method : classUnit.getMethods()) {
+                generateMethod(method, out);
+            }
+
+            // attributes
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        var bytes = new ByteArrayOutputStream();
+        try (var out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeShort(0);
+            out.writeShort(MAJOR_VERSION);
+            pool.write(out);
+            body.writeTo(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private String getSuperClass() {
+        var superClass = ollirResult.getOllirClass().getSuperClass();
+
+        return superClass != null ? getObjClass(superClass) : OBJECT_CLASS;
+    }
+
+    private int getAccessFlags(AccessModifier modifier) {
+        return switch (modifier) {
+            case PUBLIC -> ACC_PUBLIC;
+            case PRIVATE -> ACC_PRIVATE;
+            case PROTECTED -> ACC_PROTECTED;
+            default -> 0;
+        };
+    }
+
+    private void generateField(Field field, DataOutputStream out) throws IOException {
+        int flags = getAccessFlags(field.getFieldAccessModifier());
+        if (field.isStaticField()) {
+            flags |= ACC_STATIC;
+        }
+        if (field.isFinalField()) {
+            flags |= ACC_FINAL;
+        }
+
+        out.writeShort(flags);
+        out.writeShort(pool.utf8(field.getFieldName()));
+        out.writeShort(pool.utf8(getDescriptor(field.getFieldType())));
+
+        // attributes
+        out.writeShort(0);
+    }
+
+    private void generateMethod(Method method, DataOutputStream out) throws IOException {
+
+        // set method
+        currentMethod = method;
+        code = new BytecodeBuffer(pool);
+
+        int flags = getAccessFlags(method.getMethodAccessModifier());
+        if (method.isConstructMethod()) {
+            // same as the Jasmin backend, constructors are always public
+            flags = ACC_PUBLIC;
+        }
+        if (method.isStaticMethod()) {
+            flags |= ACC_STATIC;
+        }
+        if (method.isFinalMethod()) {
+            flags |= ACC_FINAL;
+        }
+        if (method.isVarargs()) {
+            flags |= ACC_VARARGS;
+        }
+
+        var name = method.isConstructMethod() ? CONSTRUCTOR : method.getMethodName();
+
+        selector = new InstructionSelector(method);
+
+        for (var inst : method.getInstructions()) {
+            for (var label : method.getLabels(inst)) {
+                code.bind(label);
+            }
+
+            if (selector.isFolded(inst)) {
+                continue;
+            }
+
+            var increment = selector.getIncrement(inst);
+            if (increment.isPresent()) {
+                code.iinc(increment.get().register(), increment.get().amount());
+                continue;
+            }
+
+            generateInstruction(inst);
+        }
+
+        // OLLIR may leave out the return of void methods (e.g. constructors)
+        var instructions = method.getInstructions();
+        var last = instructions.isEmpty() ? null : instructions.get(instructions.size() - 1);
+        if (!(last instanceof ReturnInstruction) && !(last instanceof GotoInstruction)) {
+            code.op(BytecodeBuffer.RETURN, 0);
+        }
+
+        var bytecode = code.getCode();
+        int maxStack = code.getMaxStack();
+        int maxLocals = BackendUtils.getLocalsLimit(method);
+
+        VerboseLog.print(ollirResult.getConfig(), VerboseLog.DETAILS,
+                () -> "limits of " + name + ": stack " + maxStack + ", locals " + maxLocals);
+
+        out.writeShort(flags);
+        out.writeShort(pool.utf8(name));
+        out.writeShort(pool.utf8(getMethodDescriptor(method)));
+
+        // a single attribute, the code
+        out.writeShort(1);
+        out.writeShort(pool.utf8("Code"));
+        // max stack, max locals, code length, code, exception table length and attributes count
+        out.writeInt(2 + 2 + 4 + bytecode.length + 2 + 2);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(bytecode.length);
+        out.write(bytecode);
+        out.writeShort(0);
+        out.writeShort(0);
+
+        // unset method
+        currentMethod = null;
+        selector = null;
+        code = null;
+    }
+
+    private String getMethodDescriptor(Method method) {
+        if (method.isConstructMethod()) {
+            return "()V";
+        }
+
+        var descriptor = new StringBuilder("(");
+        for (var param : method.getParams()) {
+            descriptor.append(getDescriptor(param.getType()));
+        }
+
+        return descriptor.append(")").append(getDescriptor(method.getReturnType())).toString();
+    }
+
+    private String getDescriptor(Type type) {
+        return switch (type.getTypeOfElement()) {
+            case INT32 -> "I";
+            case BOOLEAN -> "Z";
+            case STRING -> "Ljava/lang/String;";
+            case VOID -> "V";
+            case ARRAYREF -> "[" + getDescriptor(((ArrayType) type).getElementType());
+            case OBJECTREF, CLASS, THIS -> "L" + getObjClass(((ClassType) type).getName()) + ";";
+        };
+    }
+
+    private String getObjClass(String className) {
+        for (String _imp : ollirResult.getOllirClass().getImports()) {
+            if (_imp.endsWith("." + className)) {
+                return _imp.replaceAll("\\.", "/");
+            }
+        }
+        return className;
+    }
+
+    private void generateInstruction(Instruction inst) {
+        if (inst instanceof AssignInstruction assign) {
+            generateAssign(assign);
+        } else if (inst instanceof CallInstruction call) {
+            generateCall(call);
+
+            // the value of a call used as a statement is discarded
+            if (call.getReturnType().getTypeOfElement() != ElementType.VOID) {
+                code.op(BytecodeBuffer.POP, -1);
+            }
+        } else if (inst instanceof CondBranchInstruction branch) {
+            generateBranch(branch);
+        } else if (inst instanceof GotoInstruction gotoInst) {
+            code.jump(BytecodeBuffer.GOTO, gotoInst.getLabel(), 0);
+        } else if (inst instanceof ReturnInstruction returnInst) {
+            generateReturn(returnInst);
+        } else if (inst instanceof PutFieldInstruction putField) {
+            generatePutField(putField);
+        } else {
+            // the other instructions only push a value
+            generateValue(inst);
+        }
+    }
+
+    /**
+     * Generates an instruction that pushes a single value.
+     *
+     * @param inst
+     */
+    private void generateValue(Instruction inst) {
+        if (inst instanceof SingleOpInstruction singleOp) {
+            generateLoad(singleOp.getSingleOperand());
+        } else if (inst instanceof BinaryOpInstruction binaryOp) {
+            generateBinaryOp(binaryOp);
+        } else if (inst instanceof UnaryOpInstruction unaryOp) {
+            generateUnaryOp(unaryOp);
+        } else if (inst instanceof CallInstruction call) {
+            generateCall(call);
+        } else if (inst instanceof GetFieldInstruction getField) {
+            generateGetField(getField);
+        } else {
+            throw new NotImplementedException(inst.getClass());
+        }
+    }
+
+    private int getRegister(Operand operand) {
+        var descriptor = currentMethod.getVarTable().get(operand.getName());
+        if (descriptor == null) {
+            throw new RuntimeException("Variable '" + operand.getName() + "' is not in the var table of method '"
+                    + currentMethod.getMethodName() + "'");
+        }
+
+        return descriptor.getVirtualReg();
+    }
+
+    private static boolean isReference(Type type) {
+        return switch (type.getTypeOfElement()) {
+            case INT32, BOOLEAN -> false;
+            case OBJECTREF, ARRAYREF, CLASS, THIS, STRING -> true;
+            case VOID -> throw new NotImplementedException(type.getTypeOfElement());
+        };
+    }
+
+    private void generateLoad(Element element) {
+        if (element instanceof LiteralElement literal) {
+            code.pushInt(Integer.parseInt(literal.getLiteral()));
+            return;
+        }
+
+        var operand = (Operand) element;
+
+        if (operand.getType().getTypeOfElement() == ElementType.THIS) {
+            code.op(BytecodeBuffer.ALOAD_0, 1);
+            return;
+        }
+
+        if (operand instanceof ArrayOperand arrayOperand) {
+            loadArrayAndIndex(arrayOperand);
+            code.op(isReference(arrayOperand.getType()) ? BytecodeBuffer.AALOAD : BytecodeBuffer.IALOAD, -1);
+            return;
+        }
+
+        if (isReference(operand.getType())) {
+            code.local(BytecodeBuffer.ALOAD, BytecodeBuffer.ALOAD_0, getRegister(operand), 1);
+        } else {
+            code.local(BytecodeBuffer.ILOAD, BytecodeBuffer.ILOAD_0, getRegister(operand), 1);
+        }
+    }
+
+    private void loadArrayAndIndex(ArrayOperand arrayOperand) {
+        code.local(BytecodeBuffer.ALOAD, BytecodeBuffer.ALOAD_0, getRegister(arrayOperand), 1);
+        generateLoad(arrayOperand.getIndexOperands().get(0));
+    }
+
+    private void generateAssign(AssignInstruction assign) {
+        var dest = (Operand) assign.getDest();
+
+        if (dest instanceof ArrayOperand arrayOperand) {
+            loadArrayAndIndex(arrayOperand);
+            generateValue(assign.getRhs());
+            code.op(isReference(arrayOperand.getType()) ? BytecodeBuffer.AASTORE : BytecodeBuffer.IASTORE, -3);
+            return;
+        }
+
+        generateValue(assign.getRhs());
+
+        if (isReference(dest.getType())) {
+            code.local(BytecodeBuffer.ASTORE, BytecodeBuffer.ASTORE_0, getRegister(dest), -1);
+        } else {
+            code.local(BytecodeBuffer.ISTORE, BytecodeBuffer.ISTORE_0, getRegister(dest), -1);
+        }
+    }
+
+    private void generateBinaryOp(BinaryOpInstruction binaryOp) {
+        var opType = binaryOp.getOperation().getOpType();
+
+        if (getCompareOpcode(opType) != -1) {
+            // true and false as 1 and 0
+            var trueLabel = code.newLabel();
+            var endLabel = code.newLabel();
+
+            generateCompareJump(binaryOp, false, trueLabel);
+            code.op(BytecodeBuffer.ICONST_0, 1);
+            code.jump(BytecodeBuffer.GOTO, endLabel, 0);
+            code.setStack(code.getStack() - 1);
+            code.bind(trueLabel);
+            code.op(BytecodeBuffer.ICONST_1, 1);
+            code.bind(endLabel);
+            return;
+        }
+
+        generateLoad(binaryOp.getLeftOperand());
+        generateLoad(binaryOp.getRightOperand());
+
+        var op = switch (opType) {
+            case ADD -> BytecodeBuffer.IADD;
+            case SUB -> BytecodeBuffer.ISUB;
+            case MUL -> BytecodeBuffer.IMUL;
+            case DIV -> BytecodeBuffer.IDIV;
+            case SHL -> BytecodeBuffer.ISHL;
+            case SHR -> BytecodeBuffer.ISHR;
+            case SHRR -> BytecodeBuffer.IUSHR;
+            case AND, ANDB -> BytecodeBuffer.IAND;
+            case OR, ORB -> BytecodeBuffer.IOR;
+            case XOR -> BytecodeBuffer.IXOR;
+            default -> throw new NotImplementedException(opType);
+        };
+
+        code.op(op, -1);
+    }
+
+    /**
+     * Jumps to the label if the comparison is true, or if it is false when negated. Comparisons with 0 only load the
+     * other operand.
+     *
+     * @param binaryOp
+     * @param negated
+     * @param label
+     */
+    private void generateCompareJump(BinaryOpInstruction binaryOp, boolean negated, String label) {
+        var zeroComparison = InstructionSelector.getZeroComparison(binaryOp);
+
+        if (zeroComparison.isPresent()) {
+            var opType = zeroComparison.get().opType();
+            generateLoad(zeroComparison.get().operand());
+            code.jump(getZeroCompareOpcode(negated ? InstructionSelector.negate(opType) : opType), label, -1);
+            return;
+        }
+
+        var opType = binaryOp.getOperation().getOpType();
+        generateLoad(binaryOp.getLeftOperand());
+        generateLoad(binaryOp.getRightOperand());
+        code.jump(getCompareOpcode(negated ? InstructionSelector.negate(opType) : opType), label, -2);
+    }
+
+    /**
+     * @param opType
+     * @return the branch taken when the comparison with zero is true
+     */
+    private static int getZeroCompareOpcode(OperationType opType) {
+        return switch (opType) {
+            case LTH -> BytecodeBuffer.IFLT;
+            case GTH -> BytecodeBuffer.IFGT;
+            case LTE -> BytecodeBuffer.IFLE;
+            case GTE -> BytecodeBuffer.IFGE;
+            case EQ -> BytecodeBuffer.IFEQ;
+            case NEQ -> BytecodeBuffer.IFNE;
+            default -> throw new NotImplementedException(opType);
+        };
+    }
+
+    /**
+     * @param opType
+     * @return the branch taken when the comparison is true, or -1 if the operation is not a comparison
+     */
+    private static int getCompareOpcode(OperationType opType) {
+        return switch (opType) {
+            case LTH -> BytecodeBuffer.IF_ICMPLT;
+            case GTH -> BytecodeBuffer.IF_ICMPGT;
+            case LTE -> BytecodeBuffer.IF_ICMPLE;
+            case GTE -> BytecodeBuffer.IF_ICMPGE;
+            case EQ -> BytecodeBuffer.IF_ICMPEQ;
+            case NEQ -> BytecodeBuffer.IF_ICMPNE;
+            default -> -1;
+        };
+    }
+
+    private void generateUnaryOp(UnaryOpInstruction unaryOp) {
+        var opType = unaryOp.getOperation().getOpType();
+        if (opType != OperationType.NOTB && opType != OperationType.NOT) {
+            throw new NotImplementedException(opType);
+        }
+
+        // booleans are 0 or 1
+        generateLoad(unaryOp.getOperand());
+        code.op(BytecodeBuffer.ICONST_1, 1);
+        code.op(BytecodeBuffer.IXOR, -1);
+    }
+
+    private void generateBranch(CondBranchInstruction branch) {
+        // a boolean computed just for this branch
+        var fused = selector.getFusedBranch(branch);
+        if (fused.isPresent()) {
+            generateCompareJump(fused.get().comparison(), fused.get().negated(), branch.getLabel());
+            return;
+        }
+
+        var condition = branch.getCondition();
+
+        // comparisons and negations jump directly, without computing a boolean
+        if (condition instanceof BinaryOpInstruction binaryOp
+                && getCompareOpcode(binaryOp.getOperation().getOpType()) != -1) {
+            generateCompareJump(binaryOp, false, branch.getLabel());
+            return;
+        }
+
+        if (condition instanceof UnaryOpInstruction unaryOp
+                && unaryOp.getOperation().getOpType() == OperationType.NOTB) {
+            generateLoad(unaryOp.getOperand());
+            code.jump(BytecodeBuffer.IFEQ, branch.getLabel(), -1);
+            return;
+        }
+
+        generateValue(condition);
+        code.jump(BytecodeBuffer.IFNE, branch.getLabel(), -1);
+    }
+
+    private void generateReturn(ReturnInstruction returnInst) {
+        var type = returnInst.getReturnType();
+
+        if (type.getTypeOfElement() == ElementType.VOID) {
+            code.op(BytecodeBuffer.RETURN, 0);
+            return;
+        }
+
+        generateLoad(returnInst.getOperand());
+        code.op(isReference(type) ? BytecodeBuffer.ARETURN : BytecodeBuffer.IRETURN, -1);
+    }
+
+    private void generatePutField(PutFieldInstruction putField) {
+        var field = putField.getField();
+
+        generateLoad(putField.getObject());
+        generateLoad(putField.getValue());
+
+        code.opU2(BytecodeBuffer.PUTFIELD, getFieldRef(field), -2);
+    }
+
+    private void generateGetField(GetFieldInstruction getField) {
+        var field = getField.getField();
+
+        generateLoad(getField.getObject());
+
+        code.opU2(BytecodeBuffer.GETFIELD, getFieldRef(field), 0);
+    }
+
+    private int getFieldRef(Operand field) {
+        return pool.fieldRef(ollirResult.getOllirClass().getClassName(), field.getName(),
+                getDescriptor(field.getType()));
+    }
+
+    private void generateCall(CallInstruction call) {
+        var callType = call.getInvocationType();
+        var caller = call.getCaller();
+
+        switch (callType) {
+            case NEW -> generateNew(call);
+            case arraylength -> {
+                generateLoad(caller);
+                code.op(BytecodeBuffer.ARRAYLENGTH, 0);
+            }
+            case invokestatic -> {
+                var owner = getObjClass(((Operand) caller).getName());
+                generateInvoke(BytecodeBuffer.INVOKESTATIC, owner, call, 0);
+            }
+            case invokevirtual -> {
+                generateLoad(caller);
+                generateInvoke(BytecodeBuffer.INVOKEVIRTUAL, getObjClass(((ClassType) caller.getType()).getName()),
+                        call, 1);
+            }
+            case invokespecial -> {
+                generateLoad(caller);
+
+                // the constructor of the class itself calls the constructor of its superclass
+                var owner = caller.getType().getTypeOfElement() == ElementType.THIS ? getSuperClass()
+                        : getObjClass(((ClassType) caller.getType()).getName());
+                generateInvoke(BytecodeBuffer.INVOKESPECIAL, owner, call, 1);
+            }
+            default -> throw new NotImplementedException(callType);
+        }
+    }
+
+    private void generateNew(CallInstruction call) {
+        // the type of the caller is incomplete for arrays
+        var type = call.getReturnType();
+
+        if (type instanceof ArrayType arrayType) {
+            generateLoad(call.getArguments().get(0));
+
+            var elementType = arrayType.getElementType();
+            switch (elementType.getTypeOfElement()) {
+                case INT32 -> code.opU1(BytecodeBuffer.NEWARRAY, BytecodeBuffer.T_INT, 0);
+                case BOOLEAN -> code.opU1(BytecodeBuffer.NEWARRAY, BytecodeBuffer.T_BOOLEAN, 0);
+                case STRING -> code.opU2(BytecodeBuffer.ANEWARRAY, pool.classRef("java/lang/String"), 0);
+                default -> code.opU2(BytecodeBuffer.ANEWARRAY,
+                        pool.classRef(getObjClass(((ClassType) elementType).getName())), 0);
+            }
+            return;
+        }
+
+        // the constructor is called by a separate invokespecial
+        code.opU2(BytecodeBuffer.NEW, pool.classRef(getObjClass(((ClassType) type).getName())), 1);
+    }
+
+    /**
+     * Loads the arguments of the call and invokes it.
+     *
+     * @param opcode
+     * @param owner
+     * @param call
+     * @param receivers 1 if the object of the call is already on the stack, 0 for static calls
+     */
+    private void generateInvoke(int opcode, String owner, CallInstruction call, int receivers) {
+        var name = ((LiteralElement) call.getMethodName()).getLiteral().replace("\"", "");
+
+        var descriptor = new StringBuilder("(");
+        for (var argument : call.getArguments()) {
+            generateLoad(argument);
+            descriptor.append(getDescriptor(argument.getType()));
+        }
+        descriptor.append(")").append(getDescriptor(call.getReturnType()));
+
+        int returned = call.getReturnType().getTypeOfElement() == ElementType.VOID ? 0 : 1;
+        int popped = receivers + call.getArguments().size();
+
+        code.opU2(opcode, pool.methodRef(owner, name, descriptor.toString()), returned - popped);
+    }
+}
@@ -0,0 +1,76 @@
+package pt.up.fe.comp2024.backend;
+
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.StageResult;
+import pt.up.fe.specs.util.SpecsCollections;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of the class file backend ('-e=class'), the bytes of a single class file.
+ */
+public class ClassFileResult implements StageResult {
+
+    private final String className;
+    private final byte[] classFile;
+    private final List<Report> reports;
+    private final Map<String, String> config;
+
+    public ClassFileResult(String className, byte[] classFile, List<Report> reports, Map<String, String> config) {
+        this.className = className;
+        this.classFile = classFile;
+        this.reports = reports;
+        this.config = config;
+    }
+
+    public ClassFileResult(OllirResult ollirResult, byte[] classFile, List<Report> reports) {
+        this(ollirResult.getOllirClass().getClassName(), classFile,
+                SpecsCollections.concat(ollirResult.getReports(), reports), ollirResult.getConfig());
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    /**
+     * @return the contents of the class file, which should not be modified
+     */
+    public byte[] getClassFile() {
+        return classFile;
+    }
+
+    @Override
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    @Override
+    public Map<String, String> getConfig() {
+        return config;
+    }
+
+    /**
+     * Writes the class file to the given folder.
+     *
+     * @param outputDir
+     * @return a reference to the .class file
+     */
+    public File write(File outputDir) {
+        var classFilePath = new File(outputDir, className + ".class");
+
+        try {
+            Files.createDirectories(outputDir.toPath());
+            Files.write(classFilePath.toPath(), classFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write class file '" + classFilePath + "'", e);
+        }
+
+        return classFilePath;
+    }
+}
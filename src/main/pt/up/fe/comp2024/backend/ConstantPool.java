@@ -0,0 +1,102 @@
+package pt.up.fe.comp2024.backend;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Constant pool of a class file. Each constant is added once, and its index reused.
+ */
+class ConstantPool {
+
+    private static final int UTF8 = 1;
+    private static final int INTEGER = 3;
+    private static final int CLASS = 7;
+    private static final int STRING = 8;
+    private static final int FIELD_REF = 9;
+    private static final int METHOD_REF = 10;
+    private static final int NAME_AND_TYPE = 12;
+
+    private record Constant(int tag, String utf8, int value, int first, int second) {
+    }
+
+    private final List<Constant> constants;
+    private final Map<Constant, Integer> indexes;
+
+    ConstantPool() {
+        this.constants = new ArrayList<>();
+        this.indexes = new HashMap<>();
+    }
+
+    private int add(Constant constant) {
+        var index = indexes.get(constant);
+        if (index != null) {
+            return index;
+        }
+
+        // indexes start at 1
+        constants.add(constant);
+        index = constants.size();
+        if (index > 0xFFFF) {
+            throw new RuntimeException("Too many constants in class file, limit is " + 0xFFFF);
+        }
+
+        indexes.put(constant, index);
+        return index;
+    }
+
+    int utf8(String value) {
+        return add(new Constant(UTF8, value, 0, 0, 0));
+    }
+
+    int integer(int value) {
+        return add(new Constant(INTEGER, null, value, 0, 0));
+    }
+
+    /**
+     * @param internalName name of the class with '/' as separator (e.g. 'java/lang/Object')
+     * @return
+     */
+    int classRef(String internalName) {
+        return add(new Constant(CLASS, null, 0, utf8(internalName), 0));
+    }
+
+    int string(String value) {
+        return add(new Constant(STRING, null, 0, utf8(value), 0));
+    }
+
+    int fieldRef(String owner, String name, String descriptor) {
+        return add(new Constant(FIELD_REF, null, 0, classRef(owner), nameAndType(name, descriptor)));
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        return add(new Constant(METHOD_REF, null, 0, classRef(owner), nameAndType(name, descriptor)));
+    }
+
+    private int nameAndType(String name, String descriptor) {
+        return add(new Constant(NAME_AND_TYPE, null, 0, utf8(name), utf8(descriptor)));
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeShort(constants.size() + 1);
+
+        for (var constant : constants) {
+            out.writeByte(constant.tag());
+
+            switch (constant.tag()) {
+                // modified UTF-8, as expected by the JVM
+                case UTF8 -> out.writeUTF(constant.utf8());
+                case INTEGER -> out.writeInt(constant.value());
+                case CLASS, STRING -> out.writeShort(constant.first());
+                case FIELD_REF, METHOD_REF, NAME_AND_TYPE -> {
+                    out.writeShort(constant.first());
+                    out.writeShort(constant.second());
+                }
+                default -> throw new IllegalStateException("Unexpected constant tag " + constant.tag());
+            }
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package pt.up.fe.comp2024.backend;
+
+import org.specs.comp.ollir.*;
+import org.specs.comp.ollir.tree.TreeNode;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Chooses cheaper JVM instructions for some shapes of OLLIR instructions of a method, before its code is generated.
+ * <p>
+ * Both backends ask it, for each instruction, if it was replaced:
+ * <ul>
+ * <li>'x := x + c', 'x := c + x' and 'x := x - c' become an {@link Increment} ('iinc'). So does the pair
+ * 't := x + c; x := t' that OLLIR generates for 'x = x + c', if 't' is used nowhere else and there is no label between
+ * both, in which case the second instruction is {@link #isFolded folded} into the first;</li>
+ * <li>comparisons with the literal 0 become a {@link ZeroComparison} of the other operand ('iflt', 'ifge', ...);</li>
+ * <li>'t := a &lt; b; if (t) goto L', and 'if (!t) goto L', become a {@link FusedBranch} that jumps on the comparison
+ * itself, if 't' is used nowhere else and there is no label between both. The assignment is folded into the
+ * branch.</li>
+ * </ul>
+ */
+class InstructionSelector {
+
+    /**
+     * Adds a constant to an int register.
+     */
+    record Increment(int register, int amount) {
+    }
+
+    /**
+     * Compares an operand with zero, e.g. 'x &lt; 0' or '0 &lt; x' (as 'x &gt; 0').
+     */
+    record ZeroComparison(Element operand, OperationType opType) {
+    }
+
+    /**
+     * Jumps if the comparison is true, or if it is false when negated.
+     */
+    record FusedBranch(BinaryOpInstruction comparison, boolean negated) {
+    }
+
+    private final Method method;
+    private final Map<Instruction, Increment> increments;
+    private final Map<Instruction, FusedBranch> branches;
+    private final Set<Instruction> folded;
+
+    InstructionSelector(Method method) {
+        this.method = method;
+        this.increments = new HashMap<>();
+        this.branches = new HashMap<>();
+        this.folded = new HashSet<>();
+
+        select();
+    }
+
+    /**
+     * @param inst
+     * @return the increment that replaces the instruction, if any
+     */
+    Optional<Increment> getIncrement(Instruction inst) {
+        return Optional.ofNullable(increments.get(inst));
+    }
+
+    /**
+     * @param branch
+     * @return the comparison the branch jumps on, if the boolean it tests was folded into it
+     */
+    Optional<FusedBranch> getFusedBranch(CondBranchInstruction branch) {
+        return Optional.ofNullable(branches.get(branch));
+    }
+
+    /**
+     * @param inst
+     * @return true if the instruction is part of the one before or after it, and generates no code
+     */
+    boolean isFolded(Instruction inst) {
+        return folded.contains(inst);
+    }
+
+    /**
+     * @param binaryOp
+     * @return the comparison of one operand with zero, if the other operand is the literal 0
+     */
+    static Optional<ZeroComparison> getZeroComparison(BinaryOpInstruction binaryOp) {
+        var opType = binaryOp.getOperation().getOpType();
+
+        // the comparison of zero with x, as a comparison of x with zero
+        var mirrored = switch (opType) {
+            case LTH -> OperationType.GTH;
+            case GTH -> OperationType.LTH;
+            case LTE -> OperationType.GTE;
+            case GTE -> OperationType.LTE;
+            case EQ, NEQ -> opType;
+            default -> null;
+        };
+
+        if (mirrored == null) {
+            return Optional.empty();
+        }
+
+        if (isZero(binaryOp.getRightOperand())) {
+            return Optional.of(new ZeroComparison(binaryOp.getLeftOperand(), opType));
+        }
+
+        if (isZero(binaryOp.getLeftOperand())) {
+            return Optional.of(new ZeroComparison(binaryOp.getRightOperand(), mirrored));
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * @param opType
+     * @return the comparison that is true when the given one is false, or null if the operation is not a comparison
+     */
+    static OperationType negate(OperationType opType) {
+        return switch (opType) {
+            case LTH -> OperationType.GTE;
+            case GTE -> OperationType.LTH;
+            case GTH -> OperationType.LTE;
+            case LTE -> OperationType.GTH;
+            case EQ -> OperationType.NEQ;
+            case NEQ -> OperationType.EQ;
+            default -> null;
+        };
+    }
+
+    private static boolean isZero(Element element) {
+        return element instanceof LiteralElement literal && literal.getLiteral().equals("0");
+    }
+
+    private void select() {
+        var instructions = method.getInstructions();
+        var occurrences = countOccurrences(instructions);
+
+        for (int i = 0; i < instructions.size(); i++) {
+            if (!(instructions.get(i) instanceof AssignInstruction assign)
+                    || !(assign.getRhs() instanceof BinaryOpInstruction binaryOp)) {
+                continue;
+            }
+
+            var dest = assign.getDest();
+            if (dest instanceof ArrayOperand || !(dest instanceof Operand destOperand)) {
+                continue;
+            }
+
+            // t := a < b; if (t) goto L
+            if (negate(binaryOp.getOperation().getOpType()) != null) {
+                selectBranch(assign, destOperand, binaryOp, instructions, i, occurrences);
+                continue;
+            }
+
+            // x := x + c
+            var amount = getIncrement(destOperand.getName(), binaryOp);
+            if (amount.isPresent()) {
+                increments.put(assign, new Increment(getRegister(destOperand), amount.get()));
+                continue;
+            }
+
+            // t := x + c; x := t
+            if (i + 1 >= instructions.size()
+                    || !(instructions.get(i + 1) instanceof AssignInstruction next)
+                    || !method.getLabels(next).isEmpty()
+                    || !isTemporary(destOperand, occurrences)) {
+                continue;
+            }
+
+            if (next.getDest() instanceof ArrayOperand || !(next.getDest() instanceof Operand variable)) {
+                continue;
+            }
+
+            if (!(next.getRhs() instanceof SingleOpInstruction copy)
+                    || !(copy.getSingleOperand() instanceof Operand copied)
+                    || copied instanceof ArrayOperand
+                    || !copied.getName().equals(destOperand.getName())) {
+                continue;
+            }
+
+            amount = getIncrement(variable.getName(), binaryOp);
+            if (amount.isPresent()) {
+                increments.put(assign, new Increment(getRegister(variable), amount.get()));
+                folded.add(next);
+            }
+        }
+    }
+
+    private void selectBranch(AssignInstruction assign, Operand temp, BinaryOpInstruction comparison,
+                              List<Instruction> instructions, int index, Map<String, Integer> occurrences) {
+
+        if (index + 1 >= instructions.size()
+                || !(instructions.get(index + 1) instanceof CondBranchInstruction branch)
+                || !method.getLabels(branch).isEmpty()
+                || !isTemporary(temp, occurrences)) {
+            return;
+        }
+
+        Element tested;
+        boolean negated;
+        if (branch.getCondition() instanceof SingleOpInstruction singleOp) {
+            tested = singleOp.getSingleOperand();
+            negated = false;
+        } else if (branch.getCondition() instanceof UnaryOpInstruction unaryOp
+                && unaryOp.getOperation().getOpType() == OperationType.NOTB) {
+            tested = unaryOp.getOperand();
+            negated = true;
+        } else {
+            return;
+        }
+
+        if (!(tested instanceof Operand operand) || operand instanceof ArrayOperand
+                || !operand.getName().equals(temp.getName())) {
+            return;
+        }
+
+        branches.put(branch, new FusedBranch(comparison, negated));
+        folded.add(assign);
+    }
+
+    /**
+     * @param name
+     * @param binaryOp
+     * @return the amount added to the variable with the given name, if the operation is 'name + c', 'c + name' or
+     * 'name - c'
+     */
+    private Optional<Integer> getIncrement(String name, BinaryOpInstruction binaryOp) {
+        if (!isIntVariable(binaryOp.getLeftOperand(), name) && !isIntVariable(binaryOp.getRightOperand(), name)) {
+            return Optional.empty();
+        }
+
+        var left = binaryOp.getLeftOperand();
+        var right = binaryOp.getRightOperand();
+
+        Integer amount = switch (binaryOp.getOperation().getOpType()) {
+            case ADD -> isIntVariable(left, name) ? getLiteral(right) : getLiteral(left);
+            case SUB -> isIntVariable(left, name) && getLiteral(right) != null ? -getLiteral(right) : null;
+            default -> null;
+        };
+
+        // the operand of a wide 'iinc'
+        if (amount == null || amount < Short.MIN_VALUE || amount > Short.MAX_VALUE) {
+            return Optional.empty();
+        }
+
+        return Optional.of(amount);
+    }
+
+    private boolean isIntVariable(Element element, String name) {
+        if (!(element instanceof Operand operand) || operand instanceof ArrayOperand
+                || !operand.getName().equals(name) || operand.getType().getTypeOfElement() != ElementType.INT32) {
+            return false;
+        }
+
+        // fields are not in registers
+        var descriptor = method.getVarTable().get(name);
+        return descriptor != null && descriptor.getScope() != VarScope.FIELD;
+    }
+
+    private static Integer getLiteral(Element element) {
+        if (!(element instanceof LiteralElement literal)) {
+            return null;
+        }
+
+        try {
+            return Integer.parseInt(literal.getLiteral());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param operand
+     * @param occurrences
+     * @return true if the local is only assigned once and used once, so its value is not needed after the copy
+     */
+    private boolean isTemporary(Operand operand, Map<String, Integer> occurrences) {
+        var descriptor = method.getVarTable().get(operand.getName());
+
+        return descriptor != null && descriptor.getScope() == VarScope.LOCAL
+                && occurrences.getOrDefault(operand.getName(), 0) == 2;
+    }
+
+    private int getRegister(Operand operand) {
+        return method.getVarTable().get(operand.getName()).getVirtualReg();
+    }
+
+    private static Map<String, Integer> countOccurrences(List<Instruction> instructions) {
+        var occurrences = new HashMap<String, Integer>();
+
+        for (var inst : instructions) {
+            countOccurrences(inst, occurrences);
+        }
+
+        return occurrences;
+    }
+
+    private static void countOccurrences(TreeNode node, Map<String, Integer> occurrences) {
+        if (node instanceof Operand operand) {
+            occurrences.merge(operand.getName(), 1, Integer::sum);
+        }
+
+        for (var child : node.getChildren()) {
+            countOccurrences(child, occurrences);
+        }
+    }
+}
@@ -3,16 +3,61 @@ package pt.up.fe.comp2024.backend;
 import pt.up.fe.comp.jmm.jasmin.JasminBackend;
 import pt.up.fe.comp.jmm.jasmin.JasminResult;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.StageStats;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
 
 public class JasminBackendImpl implements JasminBackend {
 
+    private final StageStats stats;
+
+    /**
+     * @param stats where the stages of the backend are recorded
+     */
+    public JasminBackendImpl(StageStats stats) {
+        this.stats = stats;
+    }
+
+    public JasminBackendImpl() {
+        this(new StageStats());
+    }
+
     @Override
     public JasminResult toJasmin(OllirResult ollirResult) {
 
-        var jasminGenerator = new JasminGenerator(ollirResult);
-        var jasminCode = jasminGenerator.build();
+        var jasminGenerator = stats.measure("cfg", () -> new JasminGenerator(ollirResult));
+        var jasminCode = stats.measure("build", jasminGenerator::build);
 
         return new JasminResult(ollirResult, jasminCode, jasminGenerator.getReports());
     }
 
+    /**
+     * Writes the Jasmin code straight to the given file as it is generated, without keeping it in memory.
+     *
+     * @param ollirResult
+     * @param jasminFile
+     * @return the reports of the backend
+     */
+    public List<Report> toJasminFile(OllirResult ollirResult, File jasminFile) {
+
+        var jasminGenerator = stats.measure("cfg", () -> new JasminGenerator(ollirResult));
+
+        try (var writer = Files.newBufferedWriter(jasminFile.toPath(), StandardCharsets.UTF_8)) {
+            stats.measure("build", () -> {
+                jasminGenerator.write(writer);
+                return null;
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write Jasmin file '" + jasminFile + "'", e);
+        }
+
+        return jasminGenerator.getReports();
+    }
+
 }
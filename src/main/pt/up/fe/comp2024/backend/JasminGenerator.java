@@ -1,28 +1,24 @@
 package pt.up.fe.comp2024.backend;
 
 import org.specs.comp.ollir.*;
-import org.specs.comp.ollir.tree.TreeNode;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.comp.jmm.report.Report;
-import pt.up.fe.specs.util.classmap.FunctionClassMap;
+import pt.up.fe.comp2024.utils.VerboseLog;
 import pt.up.fe.specs.util.exceptions.NotImplementedException;
-import pt.up.fe.specs.util.utilities.StringLines;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
-import java.util.stream.Collectors;
 
 /**
  * Generates Jasmin code from an OllirResult.
  * <p>
+ * The code is written as it is generated to a single {@link JasminWriter}, which can stream it straight to a file
+ * (see {@link #write(Appendable)}), without building a String for each instruction.
+ * <p>
  * One JasminGenerator instance per OllirResult.
  */
 public class JasminGenerator {
 
-    private static final String NL = "\n";
-    private static final String TAB = "   ";
-
     private final OllirResult ollirResult;
 
     List<Report> reports;
@@ -31,11 +27,15 @@ public class JasminGenerator {
 
     Method currentMethod;
 
-    private final FunctionClassMap<TreeNode, String> generators;
+    private InstructionSelector selector;
+
+    private int nextLabel;
+
+    private JasminWriter out;
 
     public JasminGenerator(OllirResult ollirResult) {
         this.ollirResult = ollirResult;
-        System.out.println(ollirResult.getOllirCode().toString());
+        VerboseLog.print(ollirResult.getConfig(), VerboseLog.DUMPS, ollirResult::getOllirCode);
 
         try {
             ollirResult.getOllirClass().checkMethodLabels();
@@ -47,21 +47,6 @@ public class JasminGenerator {
         reports = new ArrayList<>();
         code = null;
         currentMethod = null;
-
-        this.generators = new FunctionClassMap<>();
-        generators.put(ClassUnit.class, this::generateClassUnit);
-        generators.put(Method.class, this::generateMethod);
-        generators.put(AssignInstruction.class, this::generateAssign);
-        generators.put(SingleOpInstruction.class, this::generateSingleOp);
-        generators.put(LiteralElement.class, this::generateLiteral);
-        generators.put(Operand.class, this::generateOperand);
-        generators.put(BinaryOpInstruction.class, this::generateBinaryOp);
-        generators.put(ReturnInstruction.class, this::generateReturn);
-        generators.put(CallInstruction.class, this::generateCall);
-        generators.put(PutFieldInstruction.class, this::generatePutField);
-        generators.put(GetFieldInstruction.class, this::generateGetField);
-        generators.put(CondBranchInstruction.class, this::generateBranch);
-        generators.put(GotoInstruction.class, this::generateGoto);
     }
 
     public List<Report> getReports() {
@@ -72,168 +57,231 @@ public class JasminGenerator {
 
         // This way, build is idempotent
         if (code == null) {
-            code = generators.apply(ollirResult.getOllirClass());
+            var builder = new StringBuilder();
+            write(builder);
+            code = builder.toString();
         }
 
         return code;
     }
 
+    /**
+     * Writes the Jasmin code to the given Appendable, as it is generated.
+     *
+     * @param appendable
+     */
+    public void write(Appendable appendable) {
+        out = new JasminWriter(appendable);
+        try {
+            generateClassUnit(ollirResult.getOllirClass());
+        } finally {
+            out = null;
+        }
+    }
 
-    private String generateClassUnit(ClassUnit classUnit) {
-
-        var code = new StringBuilder();
 
-        var classModifier = classUnit.getClassAccessModifier() != AccessModifier.DEFAULT ?
-                classUnit.getClassName().toLowerCase() + " " :
-                "";
+    private void generateClassUnit(ClassUnit classUnit) {
 
         // generate class name
-        var className = ollirResult.getOllirClass().getClassName();
-        code.append(".class ")
-                .append(classModifier)
-                .append(className)
-                .append(NL);
-
-        if (classUnit.getSuperClass() != null) {
-            code.append(".super ")
-                    .append(classUnit.getSuperClass())
-                    .append("\n");
-        } else {
-            code.append(".super java/lang/Object\n");
+        out.append(".class ");
+        if (classUnit.getClassAccessModifier() != AccessModifier.DEFAULT) {
+            out.append(classUnit.getClassAccessModifier().name().toLowerCase()).append(" ");
         }
+        out.line(classUnit.getClassName());
+
+        out.append(".super ").line(getSuperClass());
 
         for (Field field : classUnit.getFields()) {
-            String modifier = "";
+            out.append(".field ");
 
-            if(!field.getFieldAccessModifier().equals(AccessModifier.DEFAULT)) modifier = field.getFieldAccessModifier().name().toLowerCase() + " ";
+            if (!field.getFieldAccessModifier().equals(AccessModifier.DEFAULT)) {
+                out.append(field.getFieldAccessModifier().name().toLowerCase()).append(" ");
+            }
 
-            code.append(".field ")
-                    .append(modifier)
-                    .append(field.getFieldName())
-                    .append(" ")
-                    .append(myGetType(field.getFieldType()))
-                    .append("\n");
+            out.append(field.getFieldName()).append(" ");
+            appendType(field.getFieldType());
+            out.newLine();
         }
 
-        var methods = new StringBuilder();
-        String construct = "";
-
-        for (var method : ollirResult.getOllirClass().getMethods()) {
-            methods.append(generators.apply(method));
+        for (var method : classUnit.getMethods()) {
+            generateMethod(method);
         }
-        code.append(methods);
-        return code.toString();
     }
 
+    private String getSuperClass() {
+        var superClass = ollirResult.getOllirClass().getSuperClass();
 
-    private String generateMethod(Method method) {
+        return superClass != null ? superClass : "java/lang/Object";
+    }
+
+
+    private void generateMethod(Method method) {
 
         // set method
         currentMethod = method;
 
-        var code = new StringBuilder();
+        out.newLine();
 
+        if (method.isConstructMethod()) {
+            out.line(".method public <init>()V").indent()
+                    .line("aload_0")
+                    .append("invokespecial ").append(getSuperClass()).line("/<init>()V")
+                    .line("return")
+                    .dedent().line(".end method");
+
+            // unset method
+            currentMethod = null;
+            return;
+        }
+
+        out.append(".method ");
 
         // calculate modifier
-        var modifier = method.getMethodAccessModifier() != AccessModifier.DEFAULT ?
-                method.getMethodAccessModifier().name().toLowerCase() + " " :
-                "";
-        if(method.isConstructMethod()){
-            String superClass;
-            if(ollirResult.getOllirClass().getSuperClass() != null){
-                superClass = ollirResult.getOllirClass().getSuperClass();
-            }else superClass = "java/lang/Object";
-
-            var defaultConstructor = "\n.method public <init>()V\n   aload_0\n   invokespecial "
-                    + superClass +
-                    "/<init>()V\n   return\n.end method\n";
-            code.append(defaultConstructor);
-        }else {
-            code.append("\n.method ")
-                    .append(modifier);
-
-            if (method.isStaticMethod()) {
-                code.append("static ");
-            } else if (method.isFinalMethod()) {
-                code.append("final ");
-            }
+        if (method.getMethodAccessModifier() != AccessModifier.DEFAULT) {
+            out.append(method.getMethodAccessModifier().name().toLowerCase()).append(" ");
+        }
 
-            var methodName = method.getMethodName();
+        if (method.isStaticMethod()) {
+            out.append("static ");
+        } else if (method.isFinalMethod()) {
+            out.append("final ");
+        }
 
-            var methodTypes = new StringBuilder();
+        var methodName = method.getMethodName();
+        out.append(methodName).append("(");
 
-            methodTypes.append("(");
+        for (var param : method.getParams()) {
+            appendType(param.getType());
+        }
 
-            for (var param : method.getParams()) {
-                methodTypes.append(myGetType(param.getType()));
-            }
+        out.append(")");
+        appendType(method.getReturnType());
+        out.newLine();
 
-            methodTypes.append(")").append(myGetType(method.getReturnType()));
+        int localCount = BackendUtils.getLocalsLimit(method);
 
-            code.append(methodName).append(methodTypes.toString()).append(NL);
-            // Add limits
+        VerboseLog.print(ollirResult.getConfig(), VerboseLog.DETAILS,
+                () -> "locals of " + methodName + ": " + localCount);
 
-            var instCode = new StringBuilder();
+        // Add limits
+        out.indent();
+        out.line(".limit stack 99");
+        out.append(".limit locals ").append(localCount).newLine();
 
-            for (var inst : method.getInstructions()) {
-                instCode.append(StringLines.getLines(generators.apply(inst)).stream()
-                        .collect(Collectors.joining(NL + TAB, TAB, NL)));
-                if((inst instanceof CallInstruction) && (((CallInstruction) inst).getReturnType().getTypeOfElement() == ElementType.VOID) && ((CallInstruction) inst).getInvocationType().equals(CallType.invokespecial)){
-                    instCode.append(TAB).append("pop").append(NL);
-                }
+        selector = new InstructionSelector(method);
+        nextLabel = 0;
+
+        for (var inst : method.getInstructions()) {
+            for (var label : method.getLabels(inst)) {
+                out.dedent().append(label).line(":").indent();
             }
-            int localCount = method.getVarTable().size();
-            if(!method.isStaticMethod()) localCount++;
 
-            System.out.println("local: " + localCount);
+            if (selector.isFolded(inst)) {
+                continue;
+            }
 
-            code.append(TAB).append(".limit stack 99").append(NL);
-            code.append(TAB).append(".limit locals ").append(localCount).append(NL);
+            var increment = selector.getIncrement(inst);
+            if (increment.isPresent()) {
+                out.append("iinc ").append(increment.get().register()).append(" ")
+                        .append(increment.get().amount()).newLine();
+                continue;
+            }
+
+            generateInstruction(inst);
 
-            code.append(instCode);
-            code.append(".end method\n");
+            if ((inst instanceof CallInstruction call)
+                    && (call.getReturnType().getTypeOfElement() == ElementType.VOID)
+                    && call.getInvocationType().equals(CallType.invokespecial)) {
+                out.line("pop");
+            }
         }
+
+        out.dedent();
+        out.line(".end method");
+
         // unset method
         currentMethod = null;
-        return code.toString();
+        selector = null;
     }
 
-    private String myGetType(Type type) {
+    private void appendType(Type type) {
         ElementType elementType = type.getTypeOfElement();
-        String stringBuilder = "";
         if (elementType == ElementType.ARRAYREF) {
-            stringBuilder += "[";
+            out.append("[");
             elementType = ((ArrayType) type).getElementType().getTypeOfElement();
         }
         switch (elementType) {
-            case INT32 -> stringBuilder += "I";
-            case BOOLEAN -> stringBuilder += "Z";
-            case STRING -> stringBuilder += "Ljava/lang/String;";
-            case VOID -> stringBuilder += "V";
-            case OBJECTREF -> {
-                return stringBuilder;
-            }
+            case INT32 -> out.append("I");
+            case BOOLEAN -> out.append("Z");
+            case STRING -> out.append("Ljava/lang/String;");
+            case VOID -> out.append("V");
             default -> {
-                return stringBuilder;
             }
         }
+    }
+
+    private void generateInstruction(Instruction inst) {
+        if (inst instanceof AssignInstruction assign) {
+            generateAssign(assign);
+        } else if (inst instanceof SingleOpInstruction singleOp) {
+            generateSingleOp(singleOp);
+        } else if (inst instanceof BinaryOpInstruction binaryOp) {
+            generateBinaryOp(binaryOp);
+        } else if (inst instanceof UnaryOpInstruction unaryOp) {
+            generateUnaryOp(unaryOp);
+        } else if (inst instanceof ReturnInstruction returnInst) {
+            generateReturn(returnInst);
+        } else if (inst instanceof CallInstruction call) {
+            generateCall(call);
+        } else if (inst instanceof PutFieldInstruction putField) {
+            generatePutField(putField);
+        } else if (inst instanceof GetFieldInstruction getField) {
+            generateGetField(getField);
+        } else if (inst instanceof CondBranchInstruction branch) {
+            generateBranch(branch);
+        } else if (inst instanceof GotoInstruction gotoInst) {
+            generateGoto(gotoInst);
+        } else {
+            throw new NotImplementedException(inst.getClass());
+        }
+    }
+
+    private void generateElement(Element element) {
+        if (element instanceof LiteralElement literal) {
+            generateLiteral(literal);
+        } else if (element instanceof Operand operand) {
+            generateOperand(operand);
+        } else {
+            throw new NotImplementedException(element.getClass());
+        }
+    }
 
-        return stringBuilder;
+    private void appendRegister(int reg) {
+        if (reg > 3) {
+            out.append(" ").append(reg).newLine();
+        } else {
+            out.append("_").append(reg).newLine();
+        }
     }
 
-    private String generateAssign(AssignInstruction assign) {
-        var code = new StringBuilder();
+    private void generateAssign(AssignInstruction assign) {
+        var lhs = assign.getDest();
+
+        if (lhs instanceof ArrayOperand arrayOperand) {
+            // the array and the index go below the value
+            loadArrayAndIndex(arrayOperand);
+            generateInstruction(assign.getRhs());
+            out.line(getArrayInstruction(arrayOperand, "astore"));
+            return;
+        }
+
         // generate code for loading what's on the right
         var rhs = assign.getRhs();
-        code.append(generators.apply(rhs));
+        generateInstruction(rhs);
         // store value in the stack in destination
-        //if ((assign.getRhs() instanceof CallInstruction)) return code.toString();
-        var lhs = assign.getDest();
         var operand = (Operand) lhs;
         // get register
         var reg = currentMethod.getVarTable().get(operand.getName()).getVirtualReg();
-        String vreg;
-        if(reg > 3) vreg = " " + reg + NL; else vreg = "_" + reg + NL;
         var ret = switch (operand.getType().getTypeOfElement()) {
             case INT32 -> "istore";
             case BOOLEAN -> "istore";
@@ -242,85 +290,182 @@ public class JasminGenerator {
             default -> throw new NotImplementedException(operand.getType().getTypeOfElement());
         };
 
-        code.append(ret).append(vreg);
-
-        return code.toString();
+        out.append(ret);
+        appendRegister(reg);
     }
 
-    private String generateSingleOp(SingleOpInstruction singleOp) {
-        return generators.apply(singleOp.getSingleOperand());
+    private void generateSingleOp(SingleOpInstruction singleOp) {
+        generateElement(singleOp.getSingleOperand());
     }
 
-    private String generateLiteral(LiteralElement literal) {
-        String sliteral = literal.getLiteral();
-
-        if (Integer.parseInt(sliteral) < -1 || Integer.parseInt(sliteral) > 5) {
-            if (Integer.parseInt(sliteral) < -128 || Integer.parseInt(sliteral) > 127) {
-                if (Integer.parseInt(sliteral) < -32768 || Integer.parseInt(sliteral) > 32767) {
-                    return "ldc " + sliteral + NL;
-                } else {
-                    return "sipush " + sliteral + NL;
-                }
-            } else {
-                return "bipush " + sliteral + NL;
-            }
+    private void generateLiteral(LiteralElement literal) {
+        int value = Integer.parseInt(literal.getLiteral());
+
+        if (value == -1) {
+            out.line("iconst_m1");
+        } else if (value >= 0 && value <= 5) {
+            out.append("iconst_").append(value).newLine();
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            out.append("bipush ").append(value).newLine();
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            out.append("sipush ").append(value).newLine();
         } else {
-            return "iconst_" + sliteral + NL;
+            out.append("ldc ").append(value).newLine();
         }
     }
 
-    private String generateOperand(Operand operand) {
+    private void generateOperand(Operand operand) {
+        if (operand.getType().getTypeOfElement() == ElementType.THIS) {
+            out.line("aload_0");
+            return;
+        }
+
+        if (operand instanceof ArrayOperand arrayOperand) {
+            loadArrayAndIndex(arrayOperand);
+            out.line(getArrayInstruction(arrayOperand, "aload"));
+            return;
+        }
+
         // get register
-        var code = new StringBuilder();
         var reg = currentMethod.getVarTable().get(operand.getName()).getVirtualReg();
-        String vreg;
-        if(reg > 3) vreg = " " + reg + NL; else vreg = "_" + reg + NL;
 
         switch (operand.getType().getTypeOfElement()) {
-            case INT32 -> {
-                code.append("iload").append(vreg);
-            }
-            case BOOLEAN -> {
-                code.append("iload").append(vreg);
-            }
-            case OBJECTREF -> {
-                code.append("aload").append(vreg);
-            }
-            case ARRAYREF -> {
-                code.append("aload").append(vreg);
-            }
-            case THIS -> {
-                return "aload_0" + NL;
-            }
+            case INT32, BOOLEAN -> out.append("iload");
+            case OBJECTREF, ARRAYREF -> out.append("aload");
             default -> throw new NotImplementedException(operand.getType().getTypeOfElement());
         }
-        return code.toString();
+
+        appendRegister(reg);
+    }
+
+    private void loadArrayAndIndex(ArrayOperand arrayOperand) {
+        out.append("aload");
+        appendRegister(currentMethod.getVarTable().get(arrayOperand.getName()).getVirtualReg());
+        generateElement(arrayOperand.getIndexOperands().get(0));
+    }
+
+    /**
+     * @param arrayOperand
+     * @param operation    'aload' or 'astore'
+     * @return the instruction that loads or stores an element of the array (e.g. 'iaload')
+     */
+    private static String getArrayInstruction(ArrayOperand arrayOperand, String operation) {
+        var prefix = switch (arrayOperand.getType().getTypeOfElement()) {
+            case INT32, BOOLEAN -> "i";
+            case OBJECTREF, ARRAYREF, STRING -> "a";
+            default -> throw new NotImplementedException(arrayOperand.getType().getTypeOfElement());
+        };
+
+        return prefix + operation;
     }
 
-    private String generateBinaryOp(BinaryOpInstruction binaryOp) {
-        var code = new StringBuilder();
+    private void generateBinaryOp(BinaryOpInstruction binaryOp) {
+        var opType = binaryOp.getOperation().getOpType();
+
+        if (getCompareBranch(opType) != null) {
+            generateComparison(binaryOp);
+            return;
+        }
+
         // load values on the left and on the right
-        code.append(generators.apply(binaryOp.getLeftOperand()));
-        code.append(generators.apply(binaryOp.getRightOperand()));
+        generateElement(binaryOp.getLeftOperand());
+        generateElement(binaryOp.getRightOperand());
 
         // apply operation
-        var op = switch (binaryOp.getOperation().getOpType()) {
+        var op = switch (opType) {
             case ADD -> "iadd";
             case SUB -> "isub";
             case MUL -> "imul";
             case DIV -> "idiv";
             case AND -> "iand";
-            case LTH -> "icmp";
-            default -> "";
+            default -> null;
         };
 
-        code.append(op).append(NL);
+        if (op != null) {
+            out.line(op);
+        }
+    }
+
+    /**
+     * Pushes 1 if the comparison is true, and 0 otherwise.
+     *
+     * @param binaryOp
+     */
+    private void generateComparison(BinaryOpInstruction binaryOp) {
+        // labels of the backend, unique in the current method
+        int index = nextLabel++;
+        var trueLabel = "cmp_true_" + index;
+        var endLabel = "cmp_end_" + index;
+
+        generateCompareJump(binaryOp, false, trueLabel);
+        out.line("iconst_0");
+        out.append("goto ").line(endLabel);
+        out.dedent().append(trueLabel).line(":").indent();
+        out.line("iconst_1");
+        out.dedent().append(endLabel).line(":").indent();
+    }
+
+    /**
+     * Jumps to the label if the comparison is true, or if it is false when negated. Comparisons with 0 only load the
+     * other operand.
+     *
+     * @param binaryOp
+     * @param negated
+     * @param label
+     */
+    private void generateCompareJump(BinaryOpInstruction binaryOp, boolean negated, String label) {
+        var zeroComparison = InstructionSelector.getZeroComparison(binaryOp);
+
+        String branch;
+        OperationType opType;
+        if (zeroComparison.isPresent()) {
+            generateElement(zeroComparison.get().operand());
+            branch = "if";
+            opType = zeroComparison.get().opType();
+        } else {
+            generateElement(binaryOp.getLeftOperand());
+            generateElement(binaryOp.getRightOperand());
+            branch = "if_icmp";
+            opType = binaryOp.getOperation().getOpType();
+        }
+
+        if (negated) {
+            opType = InstructionSelector.negate(opType);
+        }
 
-        return code.toString();
+        out.append(branch).append(getCompareBranch(opType)).append(" ").line(label);
     }
 
-    private String generateReturn(ReturnInstruction returnInst) {
-        var code = new StringBuilder();
+    private void generateUnaryOp(UnaryOpInstruction unaryOp) {
+        var opType = unaryOp.getOperation().getOpType();
+        if (opType != OperationType.NOTB && opType != OperationType.NOT) {
+            throw new NotImplementedException(opType);
+        }
+
+        // booleans are 0 or 1
+        generateElement(unaryOp.getOperand());
+        out.line("iconst_1");
+        out.line("ixor");
+    }
+
+    /**
+     * @param opType
+     * @return the suffix of the branches for the comparison (e.g. 'lt' for 'iflt' and 'if_icmplt'), or null if the
+     * operation is not a comparison
+     */
+    private static String getCompareBranch(OperationType opType) {
+        return switch (opType) {
+            case LTH -> "lt";
+            case GTH -> "gt";
+            case LTE -> "le";
+            case GTE -> "ge";
+            case EQ -> "eq";
+            case NEQ -> "ne";
+            default -> null;
+        };
+    }
+
+    private void generateReturn(ReturnInstruction returnInst) {
         ElementType type = returnInst.getReturnType().getTypeOfElement();
 
         var ret = switch (type) {
@@ -333,74 +478,73 @@ public class JasminGenerator {
         };
 
         if (!type.equals(ElementType.VOID))
-            code.append(generators.apply(returnInst.getOperand()));
-        code.append(ret).append(NL);
-
-
-        return code.toString();
+            generateElement(returnInst.getOperand());
+        out.line(ret);
     }
 
-    private String generateCall(CallInstruction callInstruction) {
-        var code = new StringBuilder();
-        var call = new StringBuilder();
+    private void generateCall(CallInstruction callInstruction) {
         CallType callType = callInstruction.getInvocationType();
-        String methodName = "";
-        boolean isInvoke = !(callType.equals(CallType.NEW) || callType.equals(CallType.arraylength));
-
-        if(isInvoke){
-            methodName = (((LiteralElement) callInstruction.getMethodName()).getLiteral()).replace("\"", "");
-        }
 
         switch (callType) {
             case invokestatic: {
-                String className = ((Operand) callInstruction.getOperands().get(0)).getName();
-                call.append("invokestatic ").append(getObjClass(className)).append("/").append(methodName);
+                String className = ((Operand) callInstruction.getCaller()).getName();
+                generateInvoke(callInstruction, "invokestatic ", getObjClass(className));
                 break;
             }
             case invokespecial: {
-                String superClass = ((ClassType) callInstruction.getOperands().get(0).getType()).getName();
-                call.append("invokespecial ").append(getObjClass(superClass)).append("/").append(methodName);
+                generateElement(callInstruction.getCaller());
+                String superClass = ((ClassType) callInstruction.getCaller().getType()).getName();
+                generateInvoke(callInstruction, "invokespecial ", getObjClass(superClass));
                 break;
             }
             case invokevirtual: {
-                String objectRef = ((ClassType) callInstruction.getOperands().get(0).getType()).getName();
-                call.append("invokevirtual ").append(getObjClass(objectRef)).append("/").append(methodName);
+                generateElement(callInstruction.getCaller());
+                String objectRef = ((ClassType) callInstruction.getCaller().getType()).getName();
+                generateInvoke(callInstruction, "invokevirtual ", getObjClass(objectRef));
                 break;
             }
             case NEW: {
-                if (callInstruction.getOperands().get(0).getType().getTypeOfElement().equals(ElementType.OBJECTREF)) {
-                    String className = this.getObjClass(((Operand)callInstruction.getOperands().get(0)).getName());
-                    call.append("new ").append(className).append("\ndup\n");
+                if (callInstruction.getCaller().getType().getTypeOfElement().equals(ElementType.OBJECTREF)) {
+                    String className = this.getObjClass(((Operand) callInstruction.getCaller()).getName());
+                    out.append("new ").line(className).line("dup");
                     break;
-                } else if (callInstruction.getOperands().get(0).getType().getTypeOfElement().equals(ElementType.ARRAYREF)){
-                    call.append(generators.apply(callInstruction.getOperands().get(1))) .append("newarray int\n");
+                } else if (callInstruction.getCaller().getType().getTypeOfElement().equals(ElementType.ARRAYREF)) {
+                    generateElement(callInstruction.getArguments().get(0));
+                    out.line("newarray int");
                     break;
                 }
 
             }
             case arraylength: {
-                System.out.println(callInstruction.getOperands().get(0).getType().getTypeOfElement());
-                call.append(generators.apply(callInstruction.getOperands().get(0))).append("arraylenght\n");
+                generateElement(callInstruction.getCaller());
+                out.line("arraylength");
                 break;
             }
         }
+    }
 
-        if(isInvoke) {
-            StringBuilder param = new StringBuilder();
-            for (var operand : callInstruction.getOperands()) {
-                Boolean cond1 = operand.equals(callInstruction.getOperands().get(0)) && callType.equals(CallType.invokestatic);
-                Boolean cond2 = operand.equals(callInstruction.getOperands().get(1));
-                if(cond1 || cond2) continue;
-                code.append(generators.apply(operand));
-                param.append(myGetType(operand.getType()));
-            }
+    /**
+     * Loads the arguments of the call, and invokes it.
+     *
+     * @param callInstruction
+     * @param invoke
+     * @param className
+     */
+    private void generateInvoke(CallInstruction callInstruction, String invoke, String className) {
+        for (var argument : callInstruction.getArguments()) {
+            generateElement(argument);
+        }
+
+        var methodName = ((LiteralElement) callInstruction.getMethodName()).getLiteral();
 
-            call.append("(")
-                    .append(param)
-                    .append(")")
-                    .append(myGetType(callInstruction.getReturnType())).append(NL);
+        out.append(invoke).append(className).append("/");
+        out.append(methodName.replace("\"", "")).append("(");
+        for (var argument : callInstruction.getArguments()) {
+            appendType(argument.getType());
         }
-        return code.append(call.toString()).toString();
+        out.append(")");
+        appendType(callInstruction.getReturnType());
+        out.newLine();
     }
 
     private String getObjClass (String className){
@@ -412,54 +556,65 @@ public class JasminGenerator {
         return className;
     }
 
-    private String generatePutField(PutFieldInstruction putFieldInstruction){
-        StringBuilder code = new StringBuilder();
-
+    private void generatePutField(PutFieldInstruction putFieldInstruction){
         Operand object = putFieldInstruction.getObject();
         Operand field = putFieldInstruction.getField();
         Element value = putFieldInstruction.getValue();
 
-        code.append(generators.apply(object));
-        code.append(generators.apply(value));
+        generateElement(object);
+        generateElement(value);
 
-        code.append("putfield ")
+        out.append("putfield ")
                 .append(ollirResult.getOllirClass().getClassName()).append("/")
-                .append(field.getName()).append(" ")
-                .append(myGetType(field.getType())).append(NL);
-        return code.toString();
+                .append(field.getName()).append(" ");
+        appendType(field.getType());
+        out.newLine();
     }
 
-    private String generateGetField(GetFieldInstruction getFieldInstruction){
-        StringBuilder code = new StringBuilder();
-
+    private void generateGetField(GetFieldInstruction getFieldInstruction){
         Operand object = getFieldInstruction.getObject();
         Operand field = getFieldInstruction.getField();
 
-        code.append(generators.apply(object));
+        generateElement(object);
 
-        code.append("getfield ")
+        out.append("getfield ")
                 .append(ollirResult.getOllirClass().getClassName()).append("/")
-                .append(field.getName()).append(" ")
-                .append(myGetType(field.getType())).append(NL);
-        return code.toString();
+                .append(field.getName()).append(" ");
+        appendType(field.getType());
+        out.newLine();
     }
 
-    private String generateBranch(CondBranchInstruction condBranchInstruction){
-        var code = new StringBuilder();
-        code.append(generators.apply(condBranchInstruction.getCondition()));
-
+    private void generateBranch(CondBranchInstruction condBranchInstruction){
+        var label = condBranchInstruction.getLabel();
 
+        // a boolean computed just for this branch
+        var fused = selector.getFusedBranch(condBranchInstruction);
+        if (fused.isPresent()) {
+            generateCompareJump(fused.get().comparison(), fused.get().negated(), label);
+            return;
+        }
 
+        var condition = condBranchInstruction.getCondition();
 
+        // comparisons and negations jump directly, without computing a boolean
+        if (condition instanceof BinaryOpInstruction binaryOp
+                && getCompareBranch(binaryOp.getOperation().getOpType()) != null) {
+            generateCompareJump(binaryOp, false, label);
+            return;
+        }
 
+        if (condition instanceof UnaryOpInstruction unaryOp
+                && unaryOp.getOperation().getOpType() == OperationType.NOTB) {
+            generateElement(unaryOp.getOperand());
+            out.append("ifeq ").line(label);
+            return;
+        }
 
-        return code.toString();
+        generateInstruction(condition);
+        out.append("ifne ").line(label);
     }
 
-    private String generateGoto(GotoInstruction gotoInstruction){
-        return "goto " + gotoInstruction.getLabel() + NL;
+    private void generateGoto(GotoInstruction gotoInstruction){
+        out.append("goto ").line(gotoInstruction.getLabel());
     }
 }
-
-
-
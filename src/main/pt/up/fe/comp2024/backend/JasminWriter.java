@@ -0,0 +1,78 @@
+package pt.up.fe.comp2024.backend;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Writes Jasmin code to an Appendable (e.g. a StringBuilder, or a Writer of a file), one line at a time.
+ * <p>
+ * Lines are indented by the current indentation level, which is written when the first text of the line is appended,
+ * so callers never build the indented line themselves.
+ */
+class JasminWriter {
+
+    private static final String INDENT = "   ";
+
+    private final Appendable out;
+
+    private int indentation;
+
+    private boolean atLineStart;
+
+    JasminWriter(Appendable out) {
+        this.out = out;
+        this.indentation = 0;
+        this.atLineStart = true;
+    }
+
+    JasminWriter indent() {
+        indentation++;
+        return this;
+    }
+
+    JasminWriter dedent() {
+        indentation--;
+        return this;
+    }
+
+    JasminWriter append(CharSequence text) {
+        try {
+            if (atLineStart) {
+                atLineStart = false;
+                for (int i = 0; i < indentation; i++) {
+                    out.append(INDENT);
+                }
+            }
+
+            out.append(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return this;
+    }
+
+    JasminWriter append(int value) {
+        return append(Integer.toString(value));
+    }
+
+    /**
+     * Ends the current line. An empty line is not indented.
+     *
+     * @return
+     */
+    JasminWriter newLine() {
+        try {
+            out.append('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        atLineStart = true;
+        return this;
+    }
+
+    JasminWriter line(CharSequence text) {
+        return append(text).newLine();
+    }
+}
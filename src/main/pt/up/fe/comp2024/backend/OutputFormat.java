@@ -0,0 +1,26 @@
+package pt.up.fe.comp2024.backend;
+
+/**
+ * What the backend generates, selected with '-e'.
+ */
+public enum OutputFormat {
+
+    /**
+     * Jasmin code, assembled into a class file by the Jasmin tool ({@link JasminBackendImpl}).
+     */
+    JASMIN,
+
+    /**
+     * The class file itself, without Jasmin code ({@link ClassFileBackendImpl}).
+     */
+    CLASS;
+
+    public static OutputFormat fromString(String format) {
+        for (OutputFormat f : OutputFormat.values()) {
+            if (f.name().equalsIgnoreCase(format)) {
+                return f;
+            }
+        }
+        throw new RuntimeException("Could not convert string '" + format + "' to an output format, expected 'jasmin' or 'class'");
+    }
+}
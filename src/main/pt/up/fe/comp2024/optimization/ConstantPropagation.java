@@ -0,0 +1,246 @@
+package pt.up.fe.comp2024.optimization;
+
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
+import pt.up.fe.comp.jmm.ast.NodePosition;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.ast.TypeUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Replaces the uses of locals and parameters that hold a known constant by the constant, and folds the operations on
+ * constants ('-o').
+ * <p>
+ * The statements of each method are visited in order, keeping the constant value of each variable (an Integer or a
+ * Boolean). After an if-else, a variable is constant only if both branches leave it with the same value. The value of
+ * a variable at the condition of a while is the fixed point of the value before the loop and the value at the end of
+ * its body, so a variable that the body changes is not constant in the loop nor after it.
+ * <p>
+ * Fields are never constant, since any call may change them.
+ */
+public class ConstantPropagation {
+
+    private final SymbolTable table;
+
+    private String currentMethod;
+
+    private boolean changed;
+
+    public ConstantPropagation(SymbolTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Propagates and folds constants until nothing changes.
+     *
+     * @param root
+     * @return true if the AST changed
+     */
+    public boolean apply(JmmNode root) {
+        boolean anyChange = false;
+
+        do {
+            changed = false;
+
+            for (var method : root.getDescendants(Kind.METHOD_DECL)) {
+                currentMethod = method.get("name");
+                statements(method, new HashMap<>(), true);
+            }
+
+            anyChange |= changed;
+        } while (changed);
+
+        return anyChange;
+    }
+
+    private void statements(JmmNode parent, Map<String, Object> constants, boolean rewrite) {
+        // copied, since folding replaces children
+        for (var child : new ArrayList<>(parent.getChildren())) {
+            statement(child, constants, rewrite);
+        }
+    }
+
+    private void statement(JmmNode stmt, Map<String, Object> constants, boolean rewrite) {
+        var kind = Kind.of(stmt);
+
+        // declarations and types
+        if (kind == null) {
+            return;
+        }
+
+        switch (kind) {
+            case I_D_ASSIGN_STMT -> {
+                var value = expression(stmt.getJmmChild(0), constants, rewrite);
+                var name = stmt.get("name");
+
+                if (!isVariable(name)) {
+                    return;
+                }
+
+                if (value != null) {
+                    constants.put(name, value);
+                } else {
+                    constants.remove(name);
+                }
+            }
+            case I_D_CURLY_ASSIGN_STMT, SEMI_COLON_STMT, RETURN_STMT -> {
+                for (var child : new ArrayList<>(stmt.getChildren())) {
+                    expression(child, constants, rewrite);
+                }
+            }
+            case CURLY_STMT -> statements(stmt, constants, rewrite);
+            case IF_ELSE_STMT -> {
+                expression(stmt.getJmmChild(0), constants, rewrite);
+
+                var thenConstants = new HashMap<>(constants);
+                statement(stmt.getJmmChild(1), thenConstants, rewrite);
+
+                var elseConstants = new HashMap<>(constants);
+                statement(stmt.getJmmChild(2), elseConstants, rewrite);
+
+                constants.clear();
+                constants.putAll(meet(thenConstants, elseConstants));
+            }
+            case WHILE_STMT -> {
+                // the constants at the condition, both when entering the loop and after each iteration
+                Map<String, Object> head = new HashMap<>(constants);
+                while (true) {
+                    var iteration = new HashMap<>(head);
+                    expression(stmt.getJmmChild(0), iteration, false);
+                    statement(stmt.getJmmChild(1), iteration, false);
+
+                    var next = meet(constants, iteration);
+                    if (next.equals(head)) {
+                        break;
+                    }
+
+                    head = next;
+                }
+
+                expression(stmt.getJmmChild(0), head, rewrite);
+                statement(stmt.getJmmChild(1), new HashMap<>(head), rewrite);
+
+                // the loop ends when the condition is false, at the head
+                constants.clear();
+                constants.putAll(head);
+            }
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * @param expr
+     * @param constants
+     * @param rewrite   if the expression is replaced by its value, when it is constant
+     * @return the value of the expression, or null if it is not constant
+     */
+    private Object expression(JmmNode expr, Map<String, Object> constants, boolean rewrite) {
+        var operands = new ArrayList<Object>();
+        for (var child : new ArrayList<>(expr.getChildren())) {
+            operands.add(expression(child, constants, rewrite));
+        }
+
+        var kind = Kind.of(expr);
+        if (kind == null) {
+            return null;
+        }
+
+        var value = switch (kind) {
+            case INTEGER_EXPR -> Integer.valueOf(expr.get("value"));
+            case BOOLEAN_EXPR -> Boolean.valueOf(expr.get("value"));
+            case I_D_EXPR -> isVariable(expr.get("name")) ? constants.get(expr.get("name")) : null;
+            case BINARY_EXPR, BINARY_BOOL_EXPR -> fold(expr.get("op"), operands.get(0), operands.get(1));
+            case NOT_EXPR -> operands.get(0) instanceof Boolean operand ? !operand : null;
+            case PARENTHESIS_EXPR -> operands.get(0);
+            default -> null;
+        };
+
+        if (value != null && rewrite && !Kind.check(expr, Kind.INTEGER_EXPR, Kind.BOOLEAN_EXPR)) {
+            expr.replace(toLiteral(expr, value));
+            changed = true;
+        }
+
+        return value;
+    }
+
+    private static Object fold(String op, Object left, Object right) {
+        if (left instanceof Integer l && right instanceof Integer r) {
+            return switch (op) {
+                case "+" -> l + r;
+                case "-" -> l - r;
+                case "*" -> l * r;
+                // division by zero is left to happen at runtime
+                case "/" -> r != 0 ? l / r : null;
+                case "<" -> l < r;
+                default -> null;
+            };
+        }
+
+        if (left instanceof Boolean l && right instanceof Boolean r && op.equals("&&")) {
+            return l && r;
+        }
+
+        return null;
+    }
+
+    /**
+     * @param left
+     * @param right
+     * @return the variables that have the same value in both
+     */
+    private static Map<String, Object> meet(Map<String, Object> left, Map<String, Object> right) {
+        var result = new HashMap<String, Object>();
+
+        for (var entry : left.entrySet()) {
+            if (Objects.equals(entry.getValue(), right.get(entry.getKey()))) {
+                result.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        return result;
+    }
+
+    private boolean isVariable(String name) {
+        return TypeUtils.resolveVar(currentMethod, name, table)
+                .filter(symbol -> !symbol.isField())
+                .isPresent();
+    }
+
+    /**
+     * @param expr  the expression that is replaced
+     * @param value
+     * @return a literal with the given value, at the position of the expression
+     */
+    private JmmNode toLiteral(JmmNode expr, Object value) {
+        var isInt = value instanceof Integer;
+        var kind = isInt ? Kind.INTEGER_EXPR : Kind.BOOLEAN_EXPR;
+
+        var literal = new JmmNodeImpl(kind.getNodeName());
+
+        // keeps the super kinds of the expression (e.g. 'Expr'), which visitors may use
+        var hierarchy = new ArrayList<>(expr.getHierarchy());
+        if (!hierarchy.isEmpty()) {
+            hierarchy.set(0, kind.getNodeName());
+            literal.setHierarchy(hierarchy);
+        }
+
+        literal.put("value", value.toString());
+
+        for (var position : NodePosition.values()) {
+            expr.getOptional(position.getString()).ifPresent(attribute -> literal.put(position.getString(), attribute));
+        }
+
+        var typeName = isInt ? TypeUtils.getIntTypeName() : TypeUtils.getBooleanTypeName();
+        literal.putObject(TypeUtils.TYPE_ATTRIBUTE, TypeUtils.getType(typeName, false, table));
+        expr.getOptionalObject(TypeUtils.METHOD_ATTRIBUTE)
+                .ifPresent(method -> literal.putObject(TypeUtils.METHOD_ATTRIBUTE, method));
+
+        return literal;
+    }
+}
@@ -3,18 +3,46 @@ package pt.up.fe.comp2024.optimization;
 import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
 import pt.up.fe.comp.jmm.ollir.JmmOptimization;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.StageStats;
 
 import java.util.Collections;
 
 public class JmmOptimizationImpl implements JmmOptimization {
 
+    private final StageStats stats;
+
+    /**
+     * @param stats where the stages of the optimizations are recorded
+     */
+    public JmmOptimizationImpl(StageStats stats) {
+        this.stats = stats;
+    }
+
+    public JmmOptimizationImpl() {
+        this(new StageStats());
+    }
+
     @Override
     public OllirResult toOllir(JmmSemanticsResult semanticsResult) {
 
-        var visitor = new OllirGeneratorVisitor(semanticsResult.getSymbolTable());
-        var ollirCode = visitor.visit(semanticsResult.getRootNode());
+        var useCache = CompilerConfig.getMethodCache(semanticsResult.getConfig());
+        var visitor = new OllirGeneratorVisitor(semanticsResult.getSymbolTable(), useCache);
+        var ollirCode = stats.measure("generation", () -> visitor.visit(semanticsResult.getRootNode()));
 
-        return new OllirResult(semanticsResult, ollirCode, Collections.emptyList());
+        return stats.measure("ollir parsing",
+                () -> new OllirResult(semanticsResult, ollirCode, Collections.emptyList()));
+    }
+
+    @Override
+    public JmmSemanticsResult optimize(JmmSemanticsResult semanticsResult) {
+
+        if (CompilerConfig.getOptimize(semanticsResult.getConfig())) {
+            var propagation = new ConstantPropagation(semanticsResult.getSymbolTable());
+            stats.measure("constant propagation", () -> propagation.apply(semanticsResult.getRootNode()));
+        }
+
+        return semanticsResult;
     }
 
     @Override
@@ -22,6 +50,13 @@ public class JmmOptimizationImpl implements JmmOptimization {
 
         //TODO: Do your OLLIR-based optimizations here
 
+        int registers = CompilerConfig.getRegisterAllocation(ollirResult.getConfig());
+        if (registers >= 0) {
+            var allocator = new RegisterAllocator(ollirResult, registers);
+            var reports = stats.measure("register allocation", allocator::allocate);
+            ollirResult.getReports().addAll(reports);
+        }
+
         return ollirResult;
     }
 }
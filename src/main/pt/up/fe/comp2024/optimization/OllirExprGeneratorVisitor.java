@@ -3,24 +3,29 @@ package pt.up.fe.comp2024.optimization;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.JmmNode;
-import pt.up.fe.comp.jmm.ast.PreorderJmmVisitor;
+import pt.up.fe.comp2024.ast.KindJmmVisitor;
 import pt.up.fe.comp2024.ast.TypeUtils;
+import pt.up.fe.comp2024.symboltable.ScopedSymbol;
 
 import static pt.up.fe.comp2024.ast.Kind.*;
 
 /**
  * Generates OLLIR code from JmmNodes that are expressions.
+ * <p>
+ * Each visit generates the code of the children it needs, so the visitor does not visit the children again afterwards.
  */
-public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExprResult> {
+public class OllirExprGeneratorVisitor extends KindJmmVisitor<Void, OllirExprResult> {
 
     private static final String SPACE = " ";
     private static final String ASSIGN = ":=";
     private final String END_STMT = ";\n";
 
     private final SymbolTable table;
+    private final TempAllocator temps;
 
-    public OllirExprGeneratorVisitor(SymbolTable table) {
+    public OllirExprGeneratorVisitor(SymbolTable table, TempAllocator temps) {
         this.table = table;
+        this.temps = temps;
     }
 
     @Override
@@ -37,6 +42,10 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
     }
 
     private OllirExprResult visitBinBoolExpr(JmmNode node, Void unused){
+        if (node.get("op").equals("&&")) {
+            return visitAndExpr(node);
+        }
+
         var lhs = visit(node.getJmmChild(0));
         var rhs = visit(node.getJmmChild(1));
 
@@ -51,7 +60,7 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
         String resOllirType = OptUtils.toOllirType(resType);
         StringBuilder code = new StringBuilder();
 
-        var temp = OptUtils.getTemp();
+        var temp = temps.getTemp();
 
         computation.append(temp);
         computation.append(resOllirType);
@@ -73,8 +82,49 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
         return new OllirExprResult(code.toString(), computation);
     }
 
+    /**
+     * Generates 'a && b' with short-circuit evaluation: the right operand is only computed if the left one is true.
+     *
+     * @param node
+     * @return
+     */
+    private OllirExprResult visitAndExpr(JmmNode node) {
+        var lhs = visit(node.getJmmChild(0));
+        var rhs = visit(node.getJmmChild(1));
+
+        Type resType = TypeUtils.getExprType(node, table);
+        String resOllirType = OptUtils.toOllirType(resType);
+
+        var temp = temps.getTemp() + resOllirType;
+
+        // labels are numbered like temporaries, so they are unique in the method
+        var labelNumber = temps.getNextTempNum();
+        var trueLabel = "and_true_" + labelNumber;
+        var endLabel = "and_end_" + labelNumber;
+
+        StringBuilder computation = new StringBuilder();
+
+        computation.append(lhs.getComputation());
+        computation.append("if (").append(lhs.getCode()).append(") goto ").append(trueLabel).append(END_STMT);
+
+        // the left operand is false
+        computation.append(temp).append(SPACE).append(ASSIGN).append(resOllirType).append(SPACE)
+                .append("0").append(resOllirType).append(END_STMT);
+        computation.append("goto ").append(endLabel).append(END_STMT);
+
+        // the left operand is true, the result is the right operand
+        computation.append(trueLabel).append(":\n");
+        computation.append(rhs.getComputation());
+        computation.append(temp).append(SPACE).append(ASSIGN).append(resOllirType).append(SPACE)
+                .append(rhs.getCode()).append(END_STMT);
+
+        computation.append(endLabel).append(":\n");
+
+        return new OllirExprResult(temp, computation);
+    }
+
     private OllirExprResult visitBoolean(JmmNode node, Void unused) {
-        var boolType = new Type(TypeUtils.getBooleanTypeName(), false);
+        var boolType = TypeUtils.getType(TypeUtils.getBooleanTypeName(), false, table);
         String ollirBoolType = OptUtils.toOllirType(boolType);
         if(node.get("value").equals("true")){
             return new OllirExprResult("1" + ollirBoolType);
@@ -85,7 +135,7 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
     private OllirExprResult visitNewID(JmmNode node, Void unused) {
         var type = node.get("value");
 
-        var temp_variable = OptUtils.getTemp();
+        var temp_variable = temps.getTemp();
 
         String code = temp_variable + "." + type;
         String computation = code + SPACE + ASSIGN + "." + type + SPACE + "new(" + type + ")" + "." + type + END_STMT;
@@ -98,7 +148,7 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
         StringBuilder code = new StringBuilder();
         StringBuilder computation = new StringBuilder();
         var methodName = node.get("value");
-        var temp = OptUtils.getTemp();
+        var temp = temps.getTemp();
 
         if(table.getMethods().stream().anyMatch(method -> method.equals(methodName))){
             var returnType = table.getReturnType(methodName);
@@ -131,12 +181,12 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
                 computation.append(", ");
                 computation.append(varName.get("name"));
                 // get the return type of the variable
-                var locals = table.getLocalVariables(node.getJmmParent().getJmmParent().get("name"));
-                for (var local : locals) {
-                    if (local.getName().equals(varName.get("name"))) {
-                        returnType = OptUtils.toOllirType(local.getType());
-                        computation.append(OptUtils.toOllirType(local.getType()));
-                    }
+                var enclosingMethod = TypeUtils.getEnclosingMethod(node);
+                var local = TypeUtils.resolveVar(enclosingMethod, varName.get("name"), table)
+                        .filter(ScopedSymbol::isLocal);
+                if (local.isPresent()) {
+                    returnType = OptUtils.toOllirType(local.get().getType());
+                    computation.append(returnType);
                 }
             }
             computation.append(temp);
@@ -185,7 +235,7 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
     }
 
     private OllirExprResult visitInteger(JmmNode node, Void unused) {
-        var intType = new Type(TypeUtils.getIntTypeName(), false);
+        var intType = TypeUtils.getType(TypeUtils.getIntTypeName(), false, table);
         String ollirIntType = OptUtils.toOllirType(intType);
         String code = node.get("value") + ollirIntType;
         return new OllirExprResult(code);
@@ -208,7 +258,7 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
         String resOllirType = OptUtils.toOllirType(resType);
         StringBuilder code = new StringBuilder();
 
-        var temp = OptUtils.getTemp();
+        var temp = temps.getTemp();
 
         computation.append(temp);
         computation.append(resOllirType);
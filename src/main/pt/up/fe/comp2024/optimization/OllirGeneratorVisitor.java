@@ -2,10 +2,13 @@ package pt.up.fe.comp2024.optimization;
 
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.analysis.table.Type;
-import pt.up.fe.comp.jmm.ast.AJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.ast.KindJmmVisitor;
+import pt.up.fe.comp2024.ast.MethodKey;
 import pt.up.fe.comp2024.ast.NodeUtils;
 import pt.up.fe.comp2024.ast.TypeUtils;
+import pt.up.fe.comp2024.symboltable.ScopedSymbol;
+import pt.up.fe.comp2024.utils.MethodCache;
 
 import java.util.List;
 import static pt.up.fe.comp2024.ast.Kind.*;
@@ -13,7 +16,7 @@ import static pt.up.fe.comp2024.ast.Kind.*;
 /**
  * Generates OLLIR code from JmmNodes that are not expressions.
  */
-public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
+public class OllirGeneratorVisitor extends KindJmmVisitor<Void, String> {
 
     private static final String SPACE = " ";
     private static final String ASSIGN = ":=";
@@ -23,13 +26,31 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
     private final String R_BRACKET = "}\n";
 
 
+    // shared by every compilation in this JVM, so that recompiling a class only generates the edited methods
+    private static final MethodCache<String> METHODS = new MethodCache<>(4096);
+
     private final SymbolTable table;
 
+    private final TempAllocator temps;
+
     private final OllirExprGeneratorVisitor exprVisitor;
 
-    public OllirGeneratorVisitor(SymbolTable table) {
+    // null if the code of methods is not reused
+    private final MethodKey methodKeys;
+
+    /**
+     * @param table
+     * @param useCache if the code of methods already generated, by their {@link MethodKey}, is reused
+     */
+    public OllirGeneratorVisitor(SymbolTable table, boolean useCache) {
         this.table = table;
-        exprVisitor = new OllirExprGeneratorVisitor(table);
+        this.methodKeys = useCache ? new MethodKey(table) : null;
+        temps = new TempAllocator();
+        exprVisitor = new OllirExprGeneratorVisitor(table, temps);
+    }
+
+    public OllirGeneratorVisitor(SymbolTable table) {
+        this(table, false);
     }
 
 
@@ -67,7 +88,7 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
 
         if(table.getMethods().stream().anyMatch(method -> method.equals(methodName))){
             var returnType = table.getReturnType(methodName);
-            var temp = OptUtils.getTemp();
+            var temp = temps.getTemp();
             code.append(temp);
             code.append(OptUtils.toOllirType(returnType));
             code.append(SPACE);
@@ -100,17 +121,10 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
                 code.append(", ");
                 code.append(varName.get("name"));
                 // get the return type of the variable
-                var locals = table.getLocalVariables(node.getJmmParent().getJmmParent().get("name"));
-                for (var local : locals) {
-                    if (local.getName().equals(varName.get("name"))) {
-                        code.append(OptUtils.toOllirType(local.getType()));
-                    }
-                }
-                for(var param : table.getParameters(node.getJmmParent().getJmmParent().get("name"))){
-                    if(param.getName().equals(varName.get("name"))){
-                        code.append(OptUtils.toOllirType(param.getType()));
-                    }
-                }
+                var enclosingMethod = TypeUtils.getEnclosingMethod(node);
+                TypeUtils.resolveVar(enclosingMethod, varName.get("name"), table)
+                        .filter(symbol -> !symbol.isField())
+                        .ifPresent(symbol -> code.append(OptUtils.toOllirType(symbol.getType())));
             }
             code.append(").");
             code.append("V");
@@ -160,59 +174,58 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
 
         var name = node.get("name");
         var methodName = node.getParent().get("name");
-        var locals = table.getLocalVariables(methodName);
-        for (var local : locals) {
-            if (local.getName().equals(name)) {
-                if (node.getChild(0).getKind().equals("IntegerExpr")) {
-                    code.append(local.getName());
-                    code.append(OptUtils.toOllirType(local.getType()));
-                    code.append(SPACE);
-                    code.append(ASSIGN);
-                    code.append(OptUtils.toOllirType(local.getType()));
-                    code.append(SPACE);
-                    code.append(node.getChild(0).get("value"));
-                    code.append(OptUtils.toOllirType(local.getType()));
-                    code.append(END_STMT);
-                }
-                if (node.getChild(0).getKind().equals("IDExpr")) {
-                    code.append(local.getName());
-                    code.append(OptUtils.toOllirType(local.getType()));
-                    code.append(SPACE);
-                    code.append(ASSIGN);
-                    code.append(OptUtils.toOllirType(local.getType()));
-                    code.append(SPACE);
-                    code.append(node.getChild(0).get("name"));
-                    code.append(OptUtils.toOllirType(local.getType()));
-                    code.append(END_STMT);
-                }
+        var resolved = TypeUtils.resolveVar(methodName, name, table).filter(ScopedSymbol::isLocal);
+        if (resolved.isPresent()) {
+            var local = resolved.get().getSymbol();
+            if (node.getChild(0).getKind().equals("IntegerExpr")) {
+                code.append(local.getName());
+                code.append(OptUtils.toOllirType(local.getType()));
+                code.append(SPACE);
+                code.append(ASSIGN);
+                code.append(OptUtils.toOllirType(local.getType()));
+                code.append(SPACE);
+                code.append(node.getChild(0).get("value"));
+                code.append(OptUtils.toOllirType(local.getType()));
+                code.append(END_STMT);
+            }
+            if (node.getChild(0).getKind().equals("IDExpr")) {
+                code.append(local.getName());
+                code.append(OptUtils.toOllirType(local.getType()));
+                code.append(SPACE);
+                code.append(ASSIGN);
+                code.append(OptUtils.toOllirType(local.getType()));
+                code.append(SPACE);
+                code.append(node.getChild(0).get("name"));
+                code.append(OptUtils.toOllirType(local.getType()));
+                code.append(END_STMT);
+            }
 
-                if (node.getChild(0).getKind().equals("BinaryExpr") || node.getChild(0).getKind().equals("GetMethod") || node.getChild(0).getKind().equals("BinaryBoolExpr")) {
-                    var expr = exprVisitor.visit(node.getChild(0));
-                    code.append(expr.getComputation());
-                    code.append(local.getName());
-                    code.append(OptUtils.toOllirType(local.getType()));
-                    code.append(SPACE);
-                    code.append(ASSIGN);
-                    code.append(OptUtils.toOllirType(local.getType()));
-                    code.append(SPACE);
-                    code.append(expr.getCode());
-                    code.append(END_STMT);
-                }
+            if (node.getChild(0).getKind().equals("BinaryExpr") || node.getChild(0).getKind().equals("GetMethod") || node.getChild(0).getKind().equals("BinaryBoolExpr")) {
+                var expr = exprVisitor.visit(node.getChild(0));
+                code.append(expr.getComputation());
+                code.append(local.getName());
+                code.append(OptUtils.toOllirType(local.getType()));
+                code.append(SPACE);
+                code.append(ASSIGN);
+                code.append(OptUtils.toOllirType(local.getType()));
+                code.append(SPACE);
+                code.append(expr.getCode());
+                code.append(END_STMT);
+            }
 
-                if(node.getChild(0).getKind().equals("NewID")){
-                    var expr = exprVisitor.visit(node.getChild(0));
-                    code.append(expr.getComputation());
-                    code.append(local.getName());
-                    code.append(".").append(node.getChild(0).get("value"));
-                    code.append(SPACE);
-                    code.append(ASSIGN);
-                    code.append(".").append(node.getChild(0).get("value"));
-                    code.append(SPACE);
-                    code.append(expr.getCode());
-                }
+            if(node.getChild(0).getKind().equals("NewID")){
+                var expr = exprVisitor.visit(node.getChild(0));
+                code.append(expr.getComputation());
+                code.append(local.getName());
+                code.append(".").append(node.getChild(0).get("value"));
+                code.append(SPACE);
+                code.append(ASSIGN);
+                code.append(".").append(node.getChild(0).get("value"));
+                code.append(SPACE);
+                code.append(expr.getCode());
+            }
 
 
-            }
         }
 
         // Check if the assignment is to an array element
@@ -239,7 +252,7 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         if (node.getNumChildren() > 0) {
             expr = exprVisitor.visit(node.getJmmChild(0));
             code.append(expr.getComputation());
-            var temp = OptUtils.getTemp();
+            var temp = temps.getTemp();
             code.append(temp).append(OptUtils.toOllirType(retType));
             code.append(SPACE).append(ASSIGN).append(OptUtils.toOllirType(retType)).append(SPACE);
             code.append(expr.getCode());
@@ -276,6 +289,18 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
 
 
     private String visitMethodDecl(JmmNode node, Void unused) {
+        if (methodKeys == null) {
+            return generateMethod(node);
+        }
+
+        // the code of a method does not depend on where it is, only on its subtree and on the class signature
+        return METHODS.get(methodKeys.get(node), () -> generateMethod(node));
+    }
+
+    private String generateMethod(JmmNode node) {
+
+        // temporaries are local to each method
+        temps.reset();
 
         StringBuilder code = new StringBuilder(NL + ".method ");
 
@@ -0,0 +1,293 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+import org.specs.comp.ollir.tree.TreeNode;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.utils.VerboseLog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns the local variables of each method to as few JVM registers as possible ('-r=&lt;n&gt;').
+ * <p>
+ * The liveness of each variable is computed over the CFG of the method, and two variables interfere if one of them is
+ * assigned while the other is live. The interference graph is colored greedily, in smallest-last order, which always
+ * finds a coloring with k colors when every subgraph has a node with less than k neighbours. The colors become the new
+ * virtual registers of the OLLIR var tables, which the backends use as they are.
+ * <p>
+ * 'this' and the parameters keep their registers. With '-r=0' each method uses as few registers as the coloring
+ * finds, otherwise a method that needs more than n registers (including 'this' and the parameters) is reported as an
+ * error.
+ */
+public class RegisterAllocator {
+
+    private final OllirResult ollirResult;
+    private final int maxRegisters;
+    private final List<Report> reports;
+
+    /**
+     * @param ollirResult
+     * @param maxRegisters the maximum number of registers of each method, or 0 to use as few as possible
+     */
+    public RegisterAllocator(OllirResult ollirResult, int maxRegisters) {
+        this.ollirResult = ollirResult;
+        this.maxRegisters = maxRegisters;
+        this.reports = new ArrayList<>();
+    }
+
+    /**
+     * Rewrites the var tables of every method of the class.
+     *
+     * @return the reports of the allocation, with an error for each method that does not fit
+     */
+    public List<Report> allocate() {
+        var classUnit = ollirResult.getOllirClass();
+
+        try {
+            classUnit.checkMethodLabels();
+        } catch (OllirErrorException e) {
+            throw new RuntimeException(e);
+        }
+        classUnit.buildCFGs();
+        classUnit.buildVarTables();
+
+        for (var method : classUnit.getMethods()) {
+            allocate(method);
+        }
+
+        return reports;
+    }
+
+    private void allocate(Method method) {
+        // the registers of 'this' and the parameters are fixed
+        int firstLocal = method.getParams().size() + (method.isStaticMethod() ? 0 : 1);
+
+        var locals = getLocals(method);
+        var interference = buildInterference(method, locals);
+        var colors = color(interference);
+
+        int numColors = 0;
+        for (int color : colors) {
+            numColors = Math.max(numColors, color + 1);
+        }
+
+        int needed = firstLocal + numColors;
+        if (maxRegisters > 0 && needed > maxRegisters) {
+            reports.add(Report.newError(Stage.OPTIMIZATION, -1, -1,
+                    "Method '" + method.getMethodName() + "' needs at least " + needed + " registers, but only "
+                            + maxRegisters + " are allowed (option '-r')",
+                    null));
+            return;
+        }
+
+        var varTable = method.getVarTable();
+        for (int i = 0; i < locals.size(); i++) {
+            varTable.get(locals.get(i)).setVirtualReg(firstLocal + colors[i]);
+        }
+
+        VerboseLog.print(ollirResult.getConfig(), VerboseLog.DETAILS,
+                () -> "registers of " + method.getMethodName() + ": " + needed + " (" + locals.size() + " locals)");
+    }
+
+    /**
+     * @param method
+     * @return the names of the variables that can be given any register
+     */
+    private static List<String> getLocals(Method method) {
+        var locals = new ArrayList<String>();
+
+        for (var entry : method.getVarTable().entrySet()) {
+            var descriptor = entry.getValue();
+
+            if (descriptor.getScope() != VarScope.LOCAL || entry.getKey().equals("this")) {
+                continue;
+            }
+
+            // names of classes in static calls are not variables
+            if (descriptor.getVarType().getTypeOfElement() == ElementType.CLASS) {
+                continue;
+            }
+
+            locals.add(entry.getKey());
+        }
+
+        // the order of the var table is not deterministic
+        locals.sort(String::compareTo);
+
+        return locals;
+    }
+
+    /**
+     * @param method
+     * @param locals
+     * @return for each local, the locals it interferes with
+     */
+    private static List<BitSet> buildInterference(Method method, List<String> locals) {
+        var indexes = new HashMap<String, Integer>();
+        for (int i = 0; i < locals.size(); i++) {
+            indexes.put(locals.get(i), i);
+        }
+
+        var instructions = method.getInstructions();
+        int size = instructions.size();
+
+        var uses = new BitSet[size];
+        var defs = new int[size];
+        var position = new HashMap<Node, Integer>();
+
+        for (int i = 0; i < size; i++) {
+            var inst = instructions.get(i);
+            position.put(inst, i);
+
+            uses[i] = new BitSet();
+            defs[i] = -1;
+
+            if (inst instanceof AssignInstruction assign) {
+                var dest = assign.getDest();
+
+                // storing into an array reads the array and the index
+                if (dest instanceof ArrayOperand) {
+                    collectUses(dest, indexes, uses[i]);
+                } else {
+                    defs[i] = indexes.getOrDefault(((Operand) dest).getName(), -1);
+                }
+
+                collectUses(assign.getRhs(), indexes, uses[i]);
+            } else {
+                collectUses(inst, indexes, uses[i]);
+            }
+        }
+
+        var liveIn = new BitSet[size];
+        var liveOut = new BitSet[size];
+        for (int i = 0; i < size; i++) {
+            liveIn[i] = new BitSet();
+            liveOut[i] = new BitSet();
+        }
+
+        // backwards, until nothing changes
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+
+            for (int i = size - 1; i >= 0; i--) {
+                var out = new BitSet();
+                for (var successor : instructions.get(i).getSuccessors()) {
+                    var succ = position.get(successor);
+                    // the end of the method has no live variables
+                    if (succ != null) {
+                        out.or(liveIn[succ]);
+                    }
+                }
+
+                var in = (BitSet) out.clone();
+                if (defs[i] != -1) {
+                    in.clear(defs[i]);
+                }
+                in.or(uses[i]);
+
+                if (!in.equals(liveIn[i]) || !out.equals(liveOut[i])) {
+                    liveIn[i] = in;
+                    liveOut[i] = out;
+                    changed = true;
+                }
+            }
+        }
+
+        var interference = new ArrayList<BitSet>();
+        for (int i = 0; i < locals.size(); i++) {
+            interference.add(new BitSet());
+        }
+
+        // a variable interferes with everything that is live after it is assigned
+        for (int i = 0; i < size; i++) {
+            int def = defs[i];
+            if (def == -1) {
+                continue;
+            }
+
+            var live = liveOut[i];
+            for (int other = live.nextSetBit(0); other >= 0; other = live.nextSetBit(other + 1)) {
+                if (other != def) {
+                    interference.get(def).set(other);
+                    interference.get(other).set(def);
+                }
+            }
+        }
+
+        return interference;
+    }
+
+    private static void collectUses(TreeNode node, Map<String, Integer> indexes, BitSet uses) {
+        if (node instanceof Operand operand) {
+            var index = indexes.get(operand.getName());
+            if (index != null) {
+                uses.set(index);
+            }
+        }
+
+        // also the indexes of array accesses and the operands of instructions
+        for (var child : node.getChildren()) {
+            collectUses(child, indexes, uses);
+        }
+    }
+
+    /**
+     * Colors the graph with the lowest colors, visiting the nodes in smallest-last order: the node with the fewest
+     * neighbours is removed from the graph, and colored after the rest of the graph.
+     *
+     * @param interference
+     * @return the color of each node
+     */
+    private static int[] color(List<BitSet> interference) {
+        int size = interference.size();
+
+        var degrees = new int[size];
+        for (int i = 0; i < size; i++) {
+            degrees[i] = interference.get(i).cardinality();
+        }
+
+        var removed = new boolean[size];
+        var order = new int[size];
+        for (int step = size - 1; step >= 0; step--) {
+            int next = -1;
+            for (int i = 0; i < size; i++) {
+                if (!removed[i] && (next == -1 || degrees[i] < degrees[next])) {
+                    next = i;
+                }
+            }
+
+            removed[next] = true;
+            order[step] = next;
+
+            var neighbours = interference.get(next);
+            for (int other = neighbours.nextSetBit(0); other >= 0; other = neighbours.nextSetBit(other + 1)) {
+                degrees[other]--;
+            }
+        }
+
+        var colors = new int[size];
+        Arrays.fill(colors, -1);
+
+        for (int node : order) {
+            var used = new BitSet();
+            var neighbours = interference.get(node);
+            for (int other = neighbours.nextSetBit(0); other >= 0; other = neighbours.nextSetBit(other + 1)) {
+                if (colors[other] != -1) {
+                    used.set(colors[other]);
+                }
+            }
+
+            colors[node] = used.nextClearBit(0);
+        }
+
+        return colors;
+    }
+}
@@ -0,0 +1,39 @@
+package pt.up.fe.comp2024.optimization;
+
+/**
+ * Hands out names for OLLIR temporaries.
+ * <p>
+ * Temporaries are local to a method, so numbering restarts for each method. This keeps the generated code independent
+ * of previous compilations and of the other methods of the class. One instance per OLLIR generation, not thread-safe.
+ */
+public class TempAllocator {
+
+    private int tempNumber;
+
+    public TempAllocator() {
+        tempNumber = -1;
+    }
+
+    public String getTemp() {
+
+        return getTemp("tmp");
+    }
+
+    public String getTemp(String prefix) {
+
+        return prefix + getNextTempNum();
+    }
+
+    public int getNextTempNum() {
+
+        tempNumber += 1;
+        return tempNumber;
+    }
+
+    /**
+     * Restarts the numbering, should be called when entering a new method.
+     */
+    public void reset() {
+        tempNumber = -1;
+    }
+}
@@ -1,14 +1,30 @@
 package pt.up.fe.comp2024.parser;
 
 import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonTokenFactory;
 import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.UnbufferedCharStream;
+import org.antlr.v4.runtime.atn.PredictionMode;
 import pt.up.fe.comp.jmm.ast.antlr.AntlrParser;
 import pt.up.fe.comp.jmm.parser.JmmParser;
 import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.JavammLexer;
+import pt.up.fe.comp2024.JavammParser;
+import pt.up.fe.comp2024.utils.ReportUtils;
 
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -26,6 +42,54 @@ import java.util.Map;
 
 public class JmmParserImpl implements JmmParser {
 
+    private static final String LL_FALLBACK_MESSAGE = "SLL parsing failed, parsed again with full LL prediction";
+
+    /**
+     * Representative program used to warm up the ANTLR prediction caches.
+     */
+    private static final String WARM_UP_CODE = """
+            import a.b;
+            class WarmUp extends b {
+                int f;
+                int[] g;
+                public int m(int x, boolean y, int... z) {
+                    int[] a;
+                    a = new int[x];
+                    a[0] = (x + 1) * 2 - x / 3;
+                    while (x < 10 && !y) { x = x + a.length; }
+                    if (y) { f = this.m(x, true, 1, 2); } else { io.println(a[x]); }
+                    a = [1, 2, 3];
+                    return new WarmUp().m(a[0], false);
+                }
+                public static void main(String[] args) {
+                }
+            }
+            """;
+
+    /**
+     * Lexer and parser instances of each thread. They are reset for each parse, instead of being created again. The
+     * token stream is created for each parse, since setting its token source does not reset it completely.
+     * <p>
+     * The DFA caches of the generated lexer and parser are static, so they are shared by all threads.
+     */
+    private static final ThreadLocal<ParserState> PARSER_STATE = ThreadLocal.withInitial(ParserState::new);
+
+    /**
+     * Parses a representative program on the current thread, so that the first real parses do not pay for building
+     * the ANTLR prediction caches.
+     */
+    public static void warmUp() {
+        new JmmParserImpl().parse(WARM_UP_CODE, Collections.emptyMap());
+    }
+
+    /**
+     * @param reports
+     * @return true if the reports come from a parse in {@link ParseMode#SLL} mode that needed the full LL fallback
+     */
+    public static boolean usedLlFallback(List<Report> reports) {
+        return reports.stream().anyMatch(report -> report.getMessage().equals(LL_FALLBACK_MESSAGE));
+    }
+
     @Override
     public String getDefaultRule() {
         return "program";
@@ -33,25 +97,148 @@ public class JmmParserImpl implements JmmParser {
 
     @Override
     public JmmParserResult parse(String jmmCode, String startingRule, Map<String, String> config) {
+        // Convert code string into a character stream
+        return parse(() -> new ANTLRInputStream(jmmCode), startingRule, config);
+    }
+
+    /**
+     * Parses a file, decoding it as the lexer asks for characters instead of reading it into a String first. Only the
+     * characters of the token being matched are kept, the tokens keep a copy of their own text. Line and column
+     * information is the same as when parsing the file contents as a String.
+     *
+     * @param inputFile
+     * @param startingRule
+     * @param config
+     * @return
+     */
+    public JmmParserResult parse(File inputFile, String startingRule, Map<String, String> config) {
+        return parse(() -> new FileCharStream(inputFile), startingRule, config);
+    }
+
+    public JmmParserResult parse(File inputFile, Map<String, String> config) {
+        return parse(inputFile, getDefaultRule(), config);
+    }
+
+    private JmmParserResult parse(InputSupplier inputSupplier, String startingRule, Map<String, String> config) {
+
+        var state = PARSER_STATE.get();
 
         try {
-            // Convert code string into a character stream
-            var input = new ANTLRInputStream(jmmCode);
-            // Transform characters into tokens using the lexer
-            var lex = new pt.up.fe.comp2024.JavammLexer(input);
-            // Wrap lexer around a token stream
-            var tokens = new CommonTokenStream(lex);
-            // Transforms tokens into a parse tree
-            var parser = new pt.up.fe.comp2024.JavammParser(tokens);
+            if (CompilerConfig.getParseMode(config) == ParseMode.SLL) {
+                var sllResult = parseSll(state, inputSupplier, startingRule, config);
+                if (sllResult != null) {
+                    return sllResult;
+                }
+            }
+
+            // Point the lexer and the parser to the input, with full LL prediction. A streamed input cannot be rewound,
+            // so each attempt gets a new one
+            var input = inputSupplier.get();
+            try {
+                state.reset(input);
 
+                // Convert ANTLR CST to JmmNode AST
+                var r = AntlrParser.parse(state.lexer, state.parser, startingRule, config);
 
-            // Convert ANTLR CST to JmmNode AST
-            var r = AntlrParser.parse(lex, parser, startingRule, config);
+                if (CompilerConfig.getParseMode(config) == ParseMode.SLL) {
+                    r.getReports().add(Report.newLog(Stage.SYNTATIC, -1, -1, LL_FALLBACK_MESSAGE, null));
+                }
 
-            return r;
+                return r;
+            } finally {
+                close(input);
+            }
         } catch (Exception e) {
             // There was an uncaught exception during parsing, create an error JmmParserResult without root node
             return JmmParserResult.newError(Report.newError(Stage.SYNTATIC, -1, -1, "Exception during parsing", e), config);
+        } finally {
+            // Do not keep the tokens of the last file alive
+            state.release();
+        }
+    }
+
+    /**
+     * First stage of {@link ParseMode#SLL}: parses with SLL prediction, stopping at the first syntax error.
+     *
+     * @return the result if there were no errors, or null if the input must be parsed again with full LL
+     */
+    private JmmParserResult parseSll(ParserState state, InputSupplier inputSupplier, String startingRule,
+                                     Map<String, String> config) throws Exception {
+        var input = inputSupplier.get();
+        state.reset(input);
+        state.parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        state.parser.setErrorHandler(new BailErrorStrategy());
+
+        try {
+            var r = AntlrParser.parse(state.lexer, state.parser, startingRule, config);
+            return ReportUtils.anyError(r.getReports()) ? null : r;
+        } catch (Exception e) {
+            // BailErrorStrategy throws on the first syntax error
+            return null;
+        } finally {
+            close(input);
+        }
+    }
+
+    private static void close(CharStream input) throws IOException {
+        if (input instanceof Closeable closeable) {
+            closeable.close();
+        }
+    }
+
+    @FunctionalInterface
+    private interface InputSupplier {
+        CharStream get() throws Exception;
+    }
+
+    /**
+     * Reads a file as the lexer consumes it, see {@link #parse(File, String, Map)}.
+     */
+    private static class FileCharStream extends UnbufferedCharStream implements Closeable {
+
+        private FileCharStream(File inputFile) throws IOException {
+            super(Files.newBufferedReader(inputFile.toPath(), StandardCharsets.UTF_8));
+            name = inputFile.getPath();
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+
+    private static class ParserState {
+
+        private static final CommonTokenFactory COPY_TEXT_FACTORY = new CommonTokenFactory(true);
+
+        private final JavammLexer lexer;
+        private final JavammParser parser;
+
+        private ParserState() {
+            // Transform characters into tokens using the lexer
+            lexer = new JavammLexer(emptyStream());
+            // Transforms tokens into a parse tree
+            parser = new JavammParser(new CommonTokenStream(lexer));
+        }
+
+        private void reset(CharStream input) {
+            input.seek(0);
+            lexer.setInputStream(input);
+            // A streamed input discards the characters of previous tokens, so tokens must copy their text
+            lexer.setTokenFactory(input instanceof UnbufferedCharStream ?
+                    COPY_TEXT_FACTORY : CommonTokenFactory.DEFAULT);
+            // Wrap lexer around a new token stream, which has not reached the end of a previous input
+            parser.setTokenStream(new CommonTokenStream(lexer));
+            parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+            parser.setErrorHandler(new DefaultErrorStrategy());
+        }
+
+        private void release() {
+            reset(emptyStream());
+        }
+
+        private static CharStream emptyStream() {
+            return new ANTLRInputStream("");
         }
     }
 }
@@ -0,0 +1,27 @@
+package pt.up.fe.comp2024.parser;
+
+/**
+ * Prediction strategy used by {@link JmmParserImpl}.
+ */
+public enum ParseMode {
+
+    /**
+     * Full LL prediction for every decision.
+     */
+    LL,
+
+    /**
+     * Tries the faster SLL prediction first, bailing out at the first syntax error, and only parses again with full LL
+     * if that fails. Produces the same trees and reports as {@link #LL}.
+     */
+    SLL;
+
+    public static ParseMode fromString(String mode) {
+        for (ParseMode m : ParseMode.values()) {
+            if (m.name().equalsIgnoreCase(mode)) {
+                return m;
+            }
+        }
+        throw new RuntimeException("Could not convert string '" + mode + "' to a parse mode, expected 'll' or 'sll'");
+    }
+}
@@ -3,13 +3,11 @@ package pt.up.fe.comp2024.symboltable;
 import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.analysis.table.Type;
-import pt.up.fe.comp2024.ast.TypeUtils;
-import pt.up.fe.specs.util.exceptions.NotImplementedException;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 public class JmmSymbolTable implements SymbolTable {
 
@@ -19,9 +17,17 @@ public class JmmSymbolTable implements SymbolTable {
     private final List<String> methods;
     private final List<String> imports;
     private final Map<String, Type> returnTypes;
+    // the lists of each method are unmodifiable
     private final Map<String, List<Symbol>> params;
     private final Map<String, List<Symbol>> locals;
 
+    /**
+     * Locals and parameters of each method by name, with locals hiding parameters of the same name.
+     */
+    private final Map<String, Map<String, ScopedSymbol>> methodScopes;
+    private final Map<String, ScopedSymbol> fieldScope;
+    private final TypePool types;
+
     public JmmSymbolTable(String className,
                           String superClassName,
                           List<Symbol> fields,
@@ -29,15 +35,21 @@ public class JmmSymbolTable implements SymbolTable {
                           List<String> imports,
                           Map<String, Type> returnTypes, //
                           Map<String, List<Symbol>> params, //
-                          Map<String, List<Symbol>> locals) { //
+                          Map<String, List<Symbol>> locals, //
+                          Map<String, Map<String, ScopedSymbol>> methodScopes, //
+                          Map<String, ScopedSymbol> fieldScope, //
+                          TypePool types) { //
         this.className = className;
         this.superClassName = superClassName;
         this.imports = imports;
-        this.fields = fields;
-        this.methods = methods;
+        this.fields = Collections.unmodifiableList(fields);
+        this.methods = Collections.unmodifiableList(methods);
         this.returnTypes = returnTypes;
         this.params = params;
         this.locals = locals;
+        this.methodScopes = methodScopes;
+        this.fieldScope = fieldScope;
+        this.types = types;
     }
 
     @Override
@@ -57,12 +69,12 @@ public class JmmSymbolTable implements SymbolTable {
 
     @Override
     public List<Symbol> getFields() {
-        return Collections.unmodifiableList(fields);
+        return fields;
     }
 
     @Override
     public List<String> getMethods() {
-        return Collections.unmodifiableList(methods);
+        return methods;
     }
 
     @Override
@@ -72,12 +84,39 @@ public class JmmSymbolTable implements SymbolTable {
 
     @Override
     public List<Symbol> getParameters(String methodSignature) {
-        return Collections.unmodifiableList(params.get(methodSignature));
+        return params.get(methodSignature);
     }
 
     @Override
     public List<Symbol> getLocalVariables(String methodSignature) {
-        return Collections.unmodifiableList(locals.get(methodSignature));
+        return locals.get(methodSignature);
+    }
+
+    /**
+     * @param name
+     * @param isArray
+     * @return the instance of the given type shared by this table and the expressions of its class
+     */
+    public Type getType(String name, boolean isArray) {
+        return types.get(name, isArray);
     }
 
+    /**
+     * Finds the variable a name refers to inside a method, looking first at its locals, then at its parameters and
+     * then at the fields of the class.
+     *
+     * @param methodSignature
+     * @param name
+     * @return the variable, or an empty Optional if no variable with that name is visible from the method
+     */
+    public Optional<ScopedSymbol> resolve(String methodSignature, String name) {
+        var scope = methodScopes.get(methodSignature);
+        var symbol = scope == null ? null : scope.get(name);
+
+        if (symbol == null) {
+            symbol = fieldScope.get(name);
+        }
+
+        return Optional.ofNullable(symbol);
+    }
 }
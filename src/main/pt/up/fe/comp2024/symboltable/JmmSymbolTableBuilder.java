@@ -16,8 +16,6 @@ public class JmmSymbolTableBuilder {
 
     public static JmmSymbolTable build(JmmNode root) {
 
-        System.out.println(root.toTree());
-
         var classDecl = root.getChildren().get(root.getChildren().size() - 1);
 
         SpecsCheck.checkArgument(Kind.CLASS_DECL.check(classDecl), () -> "Expected a class declaration: " + classDecl);
@@ -29,14 +27,49 @@ public class JmmSymbolTableBuilder {
             superClass = classDecl.get("superClassName");
         }
 
-        List<Symbol> fields = buildFields(classDecl);
+        var types = new TypePool();
+        List<Symbol> fields = buildFields(classDecl, types);
         var methods = buildMethods(classDecl);
         var imports = buildImports(root);
-        var returnTypes = buildReturnTypes(classDecl);
-        Map<String, List<Symbol>> params = buildParams(classDecl);
-        var locals = buildLocals(classDecl);
+        var returnTypes = buildReturnTypes(classDecl, types);
+        Map<String, List<Symbol>> params = buildParams(classDecl, types);
+        var locals = buildLocals(classDecl, types);
+        var methodScopes = buildMethodScopes(methods, params, locals);
+        var fieldScope = buildFieldScope(fields);
+
+        return new JmmSymbolTable(className, superClass, fields, methods, imports, returnTypes, params, locals,
+                methodScopes, fieldScope, types);
+    }
+
+    /**
+     * Indexes the locals and parameters of each method by name. When a name is declared more than once, the first
+     * local wins, then the first parameter, as when searching the lists in that order.
+     */
+    private static Map<String, Map<String, ScopedSymbol>> buildMethodScopes(List<String> methods,
+                                                                         Map<String, List<Symbol>> params,
+                                                                         Map<String, List<Symbol>> locals) {
+        Map<String, Map<String, ScopedSymbol>> map = new HashMap<>();
+
+        for (var method : methods) {
+            Map<String, ScopedSymbol> scope = new HashMap<>();
+            addToScope(scope, locals.getOrDefault(method, Collections.emptyList()), ScopedSymbol.Origin.LOCAL);
+            addToScope(scope, params.getOrDefault(method, Collections.emptyList()), ScopedSymbol.Origin.PARAM);
+            map.put(method, scope);
+        }
+
+        return map;
+    }
 
-        return new JmmSymbolTable(className, superClass, fields, methods, imports, returnTypes, params, locals);
+    private static Map<String, ScopedSymbol> buildFieldScope(List<Symbol> fields) {
+        Map<String, ScopedSymbol> scope = new HashMap<>();
+        addToScope(scope, fields, ScopedSymbol.Origin.FIELD);
+        return scope;
+    }
+
+    private static void addToScope(Map<String, ScopedSymbol> scope, List<Symbol> symbols, ScopedSymbol.Origin origin) {
+        for (var symbol : symbols) {
+            scope.putIfAbsent(symbol.getName(), new ScopedSymbol(symbol, origin));
+        }
     }
 
     private static List<String> buildImports(JmmNode classDecl) {
@@ -45,23 +78,23 @@ public class JmmSymbolTableBuilder {
                         .toList();
     }
 
-    private static List<Symbol> buildFields(JmmNode classDecl) {
+    private static List<Symbol> buildFields(JmmNode classDecl, TypePool types) {
 
         List<Symbol> fields = new ArrayList<>();
         var varDecl = classDecl.getChildren(VAR_DECL);
         for (var field : varDecl) {
             if(field.getChild(0).get("isVarargs").equals("true")){
-                fields.add(new Symbol(new Type("int...", true), field.get("name")));
+                fields.add(new Symbol(types.get("int...", true), field.get("name")));
             }
             else{
-                fields.add(new Symbol(new Type(field.getChild(0).get("value"), Objects.equals(field.getChild(0).get("isArray"),"true")), field.get("name")));
+                fields.add(new Symbol(types.get(field.getChild(0).get("value"), Objects.equals(field.getChild(0).get("isArray"),"true")), field.get("name")));
             }
         }
 
         return fields;
     }
 
-    private static Map<String, Type> buildReturnTypes(JmmNode classDecl) {
+    private static Map<String, Type> buildReturnTypes(JmmNode classDecl, TypePool types) {
 
         Map<String, Type> map = new HashMap<>();
 
@@ -69,22 +102,22 @@ public class JmmSymbolTableBuilder {
         for (var method : child) {
                 var type = method.getChild(0);
                 if(type.getChild(0).get("isVarargs").equals("true")){
-                    map.put(method.get("name"), new Type("int...", true));
+                    map.put(method.get("name"), types.get("int...", true));
                 }
                 else if (type.getChild(0).get("isArray").equals("true")) {
                     boolean value = true;
-                    map.put(method.get("name"), new Type(type.getChild(0).get("value"), value));
+                    map.put(method.get("name"), types.get(type.getChild(0).get("value"), value));
                 }
                 else {
                     boolean value = false;
-                    map.put(method.get("name"), new Type(type.getChild(0).get("value"), value));
+                    map.put(method.get("name"), types.get(type.getChild(0).get("value"), value));
                 }
         }
 
         return map;
     }
 
-    private static Map<String, List<Symbol>> buildParams(JmmNode classDecl) {
+    private static Map<String, List<Symbol>> buildParams(JmmNode classDecl, TypePool types) {
         Map<String, List<Symbol>> map = new HashMap<>();
 
         var child = classDecl.getChildren(METHOD_DECL);
@@ -94,13 +127,13 @@ public class JmmSymbolTableBuilder {
                 var methParams = method.getChildren(PARAM);
                 for (var param : methParams) {
                     if(param.getChild(0).get("isVarargs").equals("true")){
-                        params.add(new Symbol(new Type("int...", true), param.get("name")));
+                        params.add(new Symbol(types.get("int...", true), param.get("name")));
                     }
                     else {
-                        params.add(new Symbol(new Type(param.getChild(0).get("value"), Objects.equals(param.getChild(0).get("isArray"), "true")), param.get("name")));
+                        params.add(new Symbol(types.get(param.getChild(0).get("value"), Objects.equals(param.getChild(0).get("isArray"), "true")), param.get("name")));
                     }
                 }
-                map.put(method.get("name"), params);
+                map.put(method.get("name"), Collections.unmodifiableList(params));
             }
         }
 
@@ -108,7 +141,7 @@ public class JmmSymbolTableBuilder {
     }
 
 
-    private static Map<String, List<Symbol>> buildLocals(JmmNode classDecl) {
+    private static Map<String, List<Symbol>> buildLocals(JmmNode classDecl, TypePool types) {
         Map<String, List<Symbol>> map = new HashMap<>();
 
         var child = classDecl.getChildren(METHOD_DECL);
@@ -117,13 +150,13 @@ public class JmmSymbolTableBuilder {
                 var locals = new ArrayList<Symbol>();
                 for (var local : method.getChildren(Kind.VAR_DECL)) {
                     if(local.getChild(0).get("isVarargs").equals("true")){
-                        locals.add(new Symbol(new Type("int...", true), local.get("name")));
+                        locals.add(new Symbol(types.get("int...", true), local.get("name")));
                     }
                     else{
-                        locals.add(new Symbol(new Type(local.getChild(0).get("value"), local.getChild(0).get("isArray").equals("true")), local.get("name")));
+                        locals.add(new Symbol(types.get(local.getChild(0).get("value"), local.getChild(0).get("isArray").equals("true")), local.get("name")));
                     }
                 }
-                map.put(method.get("name"), locals);
+                map.put(method.get("name"), Collections.unmodifiableList(locals));
             }
         }
 
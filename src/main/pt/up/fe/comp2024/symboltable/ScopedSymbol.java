@@ -0,0 +1,57 @@
+package pt.up.fe.comp2024.symboltable;
+
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+
+/**
+ * A symbol visible from inside a method, together with the scope it was declared in.
+ */
+public class ScopedSymbol {
+
+    public enum Origin {
+        LOCAL,
+        PARAM,
+        FIELD
+    }
+
+    private final Symbol symbol;
+    private final Origin origin;
+
+    public ScopedSymbol(Symbol symbol, Origin origin) {
+        this.symbol = symbol;
+        this.origin = origin;
+    }
+
+    public Symbol getSymbol() {
+        return symbol;
+    }
+
+    public String getName() {
+        return symbol.getName();
+    }
+
+    public Type getType() {
+        return symbol.getType();
+    }
+
+    public Origin getOrigin() {
+        return origin;
+    }
+
+    public boolean isLocal() {
+        return origin == Origin.LOCAL;
+    }
+
+    public boolean isParam() {
+        return origin == Origin.PARAM;
+    }
+
+    public boolean isField() {
+        return origin == Origin.FIELD;
+    }
+
+    @Override
+    public String toString() {
+        return origin + " " + symbol;
+    }
+}
@@ -0,0 +1,33 @@
+package pt.up.fe.comp2024.symboltable;
+
+import pt.up.fe.comp.jmm.analysis.table.Type;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A single instance of each type of a class, shared by its symbol table and the types stored on its expressions.
+ * <p>
+ * Each {@link JmmSymbolTable} has its own pool, so the types are released with the compilation, and data put on a
+ * type is never seen by other compilations. The methods of a class can be analysed in parallel, so the pool can be
+ * used by several threads at once.
+ */
+public class TypePool {
+
+    private final Map<String, Type> types;
+    private final Map<String, Type> arrayTypes;
+
+    public TypePool() {
+        this.types = new ConcurrentHashMap<>();
+        this.arrayTypes = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @param name
+     * @param isArray
+     * @return the instance of the given type in this pool
+     */
+    public Type get(String name, boolean isArray) {
+        return (isArray ? arrayTypes : types).computeIfAbsent(name, key -> new Type(key, isArray));
+    }
+}
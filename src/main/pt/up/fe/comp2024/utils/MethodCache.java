@@ -0,0 +1,67 @@
+package pt.up.fe.comp2024.utils;
+
+import pt.up.fe.comp2024.ast.MethodKey;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Results of a stage for each method, by {@link MethodKey}, so that recompiling a class after a small edit only
+ * processes the edited methods.
+ * <p>
+ * Holds at most a fixed number of entries, evicting the least recently used one. Thread-safe, the results are computed
+ * outside the lock, so two threads may compute the same result.
+ */
+public class MethodCache<V> {
+
+    private final Map<String, V> entries;
+
+    private long hits;
+    private long misses;
+
+    public MethodCache(int maxEntries) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @param key
+     * @param compute
+     * @return the cached result for the given key, computing and caching it if there is none
+     */
+    public V get(String key, Supplier<V> compute) {
+        synchronized (this) {
+            var cached = entries.get(key);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+
+        var value = compute.get();
+
+        synchronized (this) {
+            entries.put(key, value);
+        }
+
+        return value;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+}
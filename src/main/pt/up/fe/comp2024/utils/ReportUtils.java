@@ -49,4 +49,24 @@ public class ReportUtils {
 
         return reports.stream().anyMatch(r -> r.getType() == ReportType.ERROR);
     }
+
+    /**
+     * Moves the given reports by a number of lines, keeping reports without a line (e.g. -1) as they are.
+     *
+     * @param reports
+     * @param offset
+     * @return new reports
+     */
+    public static List<Report> shiftLines(List<Report> reports, int offset) {
+
+        return reports.stream()
+                .map(report -> {
+                    var line = report.getLine() < 0 ? report.getLine() : report.getLine() + offset;
+                    var shifted = new Report(report.getType(), report.getStage(), line, report.getColumn(),
+                            report.getMessage());
+                    report.getException().ifPresent(shifted::setException);
+                    return shifted;
+                })
+                .toList();
+    }
 }
@@ -0,0 +1,92 @@
+package pt.up.fe.comp2024.utils;
+
+import pt.up.fe.comp2024.CompilerConfig;
+
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Debug output controlled by the verbosity level of the configuration ('-v=<level>').
+ * <p>
+ * Messages are given as suppliers, so expensive dumps (e.g. {@code JmmNode.toTree()}) are only built when the level is
+ * enabled.
+ * <p>
+ * Messages go to {@code System.out}, unless the configuration was created with {@link #withOutput(Map, PrintStream)}
+ * (e.g. by {@code CompilerDaemon}, which sends them to the client of each request).
+ */
+public class VerboseLog {
+
+    /**
+     * Time spent in each stage.
+     */
+    public static final int TIMINGS = 1;
+
+    /**
+     * Dumps of the AST, symbol table, OLLIR and Jasmin code.
+     */
+    public static final int DUMPS = 2;
+
+    /**
+     * Internal details of each stage, e.g. the number of locals of each method.
+     */
+    public static final int DETAILS = 3;
+
+    private static final String OUTPUT = "verboseOutput";
+
+    // the configuration only holds strings, so it keeps the key of the stream
+    private static final Map<String, PrintStream> OUTPUTS = new ConcurrentHashMap<>();
+
+    public static boolean isEnabled(Map<String, String> config, int level) {
+        return config != null && CompilerConfig.getVerbosity(config) >= level;
+    }
+
+    public static void print(Map<String, String> config, int level, Supplier<String> message) {
+        if (isEnabled(config, level)) {
+            getOutput(config).println(message.get());
+        }
+    }
+
+    /**
+     * @param config
+     * @return where the debug output and the stats of compilations with the given configuration are printed
+     */
+    public static PrintStream getOutput(Map<String, String> config) {
+        var key = config == null ? null : config.get(OUTPUT);
+
+        if (key == null) {
+            return System.out;
+        }
+
+        return OUTPUTS.getOrDefault(key, System.out);
+    }
+
+    /**
+     * Copies the configuration, sending its output to the given stream. The stream is kept until
+     * {@link #release(Map)} is called with the returned configuration.
+     *
+     * @param config
+     * @param out
+     * @return
+     */
+    public static Map<String, String> withOutput(Map<String, String> config, PrintStream out) {
+        var key = UUID.randomUUID().toString();
+        OUTPUTS.put(key, out);
+
+        var outputConfig = new HashMap<>(config);
+        outputConfig.put(OUTPUT, key);
+
+        return outputConfig;
+    }
+
+    public static void release(Map<String, String> config) {
+        var key = config.get(OUTPUT);
+
+        if (key != null) {
+            OUTPUTS.remove(key);
+        }
+    }
+}
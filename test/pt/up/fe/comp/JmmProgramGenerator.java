@@ -0,0 +1,160 @@
+package pt.up.fe.comp;
+
+/**
+ * Generates valid Java-- programs of a given size and shape, used to test and benchmark how the compiler scales.
+ * <p>
+ * Each method declares int locals, assigns them arithmetic expressions and returns one of them. Expressions are chains
+ * of additions and subtractions of integer literals over a local, statements can be nested in if-else and while
+ * statements over a boolean local, and can read and write an int array. The generated code only uses constructs that
+ * the semantic analysis accepts and that every stage supports.
+ */
+public class JmmProgramGenerator {
+
+    private static final String INDENT = "    ";
+    private static final String CONDITION = "c";
+    private static final String ARRAY = "arr";
+    private static final int ARRAY_SIZE = 10;
+
+    private final int methods;
+    private final int statements;
+    private final int exprDepth;
+
+    private int locals = 2;
+    private int nestingDepth = 0;
+    private boolean arrays = false;
+
+    /**
+     * @param methods    number of methods of the class, besides main
+     * @param statements number of assignments of each method
+     * @param exprDepth  number of binary operations of each assigned expression, at least one
+     */
+    public JmmProgramGenerator(int methods, int statements, int exprDepth) {
+        this.methods = methods;
+        this.statements = statements;
+        this.exprDepth = Math.max(1, exprDepth);
+    }
+
+    /**
+     * @param locals number of int locals of each method, at least two
+     */
+    public JmmProgramGenerator withLocals(int locals) {
+        this.locals = Math.max(2, locals);
+        return this;
+    }
+
+    /**
+     * @param nestingDepth number of if-else and while statements around each assignment, alternating between the two
+     */
+    public JmmProgramGenerator withNestingDepth(int nestingDepth) {
+        this.nestingDepth = nestingDepth;
+        return this;
+    }
+
+    /**
+     * @param arrays if true, each assignment also stores its value in an int array and loads it back
+     */
+    public JmmProgramGenerator withArrays(boolean arrays) {
+        this.arrays = arrays;
+        return this;
+    }
+
+    public String generate(String className) {
+        var code = new StringBuilder();
+
+        code.append("class ").append(className).append(" {\n");
+
+        for (int i = 0; i < methods; i++) {
+            generateMethod(i, code);
+        }
+
+        line(code, 1, "public static void main(String[] args) {");
+        line(code, 1, "}");
+        code.append("}\n");
+
+        return code.toString();
+    }
+
+    private void generateMethod(int index, StringBuilder code) {
+        line(code, 1, "public int m" + index + "() {");
+
+        // the semantic analysis expects the boolean condition to be the last local
+        for (int i = 0; i < locals; i++) {
+            line(code, 2, "int " + local(i) + ";");
+        }
+        if (arrays) {
+            line(code, 2, "int[] " + ARRAY + ";");
+        }
+        if (nestingDepth > 0) {
+            line(code, 2, "boolean " + CONDITION + ";");
+        }
+
+        for (int i = 0; i < locals; i++) {
+            line(code, 2, local(i) + " = " + i + ";");
+        }
+        if (arrays) {
+            line(code, 2, ARRAY + " = new int[" + ARRAY_SIZE + "];");
+        }
+        if (nestingDepth > 0) {
+            line(code, 2, CONDITION + " = true;");
+        }
+
+        for (int i = 0; i < statements; i++) {
+            generateStatement(i, nestingDepth, 2, code);
+        }
+
+        line(code, 2, "return " + local(0) + ";");
+        line(code, 1, "}");
+    }
+
+    private void generateStatement(int index, int depth, int indent, StringBuilder code) {
+        if (depth == 0) {
+            generateAssignment(index, indent, code);
+            return;
+        }
+
+        if (depth % 2 == 0) {
+            line(code, indent, "while (" + CONDITION + ") {");
+            generateStatement(index, depth - 1, indent + 1, code);
+            line(code, indent + 1, CONDITION + " = false;");
+            line(code, indent, "}");
+        } else {
+            line(code, indent, "if (" + CONDITION + ") {");
+            generateStatement(index, depth - 1, indent + 1, code);
+            line(code, indent, "} else {");
+            line(code, indent + 1, CONDITION + " = true;");
+            line(code, indent, "}");
+        }
+    }
+
+    private void generateAssignment(int index, int indent, StringBuilder code) {
+        var source = local(index % locals);
+        var target = local((index + 1) % locals);
+
+        if (!arrays) {
+            line(code, indent, target + " = " + expr(source, index) + ";");
+            return;
+        }
+
+        var position = index % ARRAY_SIZE;
+        line(code, indent, ARRAY + "[" + position + "] = " + expr(source, index) + ";");
+        line(code, indent, target + " = " + ARRAY + "[" + position + "];");
+    }
+
+    private String expr(String var, int seed) {
+        var expr = new StringBuilder(var);
+
+        for (int i = 0; i < exprDepth; i++) {
+            expr.append((seed + i) % 2 == 0 ? " + " : " - ").append((seed + i) % 100);
+        }
+
+        return expr.toString();
+    }
+
+    private static String local(int index) {
+        return "v" + index;
+    }
+
+    private static void line(StringBuilder code, int indent, String line) {
+        code.append(INDENT.repeat(indent)).append(line).append('\n');
+    }
+}
@@ -0,0 +1,105 @@
+package pt.up.fe.comp.cp1;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that parsing a file, which is streamed to the lexer, gives the same trees and the same report positions as
+ * parsing its contents as a String.
+ */
+public class FileParseTest {
+
+    private static final File CORPUS = new File("test/pt/up/fe/comp/cpf/1_parser_and_tree");
+
+    private static final String SYNTAX_ERRORS = """
+            class Errors {
+                public int foo(int a) {
+                    int b;
+                    b = a +* 2;
+                    return b
+                }
+                public int bar() {
+                    return #1;
+                }
+            }
+            """;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File write(String code) throws IOException {
+        var file = folder.newFile();
+        SpecsIo.write(file, code);
+        return file;
+    }
+
+    private static List<String> positions(JmmParserResult result) {
+        var positions = new ArrayList<String>();
+
+        for (var report : result.getReports()) {
+            positions.add(report.getType() + "@" + report.getLine() + ":" + report.getColumn() + " " + report.getMessage());
+        }
+
+        if (result.getRootNode() != null) {
+            addPositions(result.getRootNode(), positions);
+        }
+
+        return positions;
+    }
+
+    private static void addPositions(JmmNode node, List<String> positions) {
+        positions.add(node.getKind() + "@" + node.get("lineStart") + ":" + node.get("colStart") + "-"
+                + node.get("lineEnd") + ":" + node.get("colEnd"));
+        node.getChildren().forEach(child -> addPositions(child, positions));
+    }
+
+    private static void assertSameResult(String code, File file, Map<String, String> config) {
+        var fromString = new JmmParserImpl().parse(code, config);
+        var fromFile = new JmmParserImpl().parse(file, config);
+
+        assertEquals(positions(fromString), positions(fromFile));
+        if (fromString.getRootNode() != null) {
+            assertEquals(fromString.getRootNode().toTree(), fromFile.getRootNode().toTree());
+        }
+    }
+
+    @Test
+    public void sameTreesAndPositions() {
+        var files = SpecsIo.getFilesRecursive(CORPUS, "jmm");
+        assertFalse("Empty corpus in " + CORPUS, files.isEmpty());
+
+        for (var file : files) {
+            var code = SpecsIo.read(file);
+            assertSameResult(code, file, Collections.emptyMap());
+            assertSameResult(code, file, Map.of("parseMode", "sll"));
+        }
+    }
+
+    @Test
+    public void sameErrorPositions() throws IOException {
+        var file = write(SYNTAX_ERRORS);
+
+        var result = new JmmParserImpl().parse(file, Collections.emptyMap());
+        assertTrue("Expected syntax errors", result.getReports().size() > 1);
+
+        assertSameResult(SYNTAX_ERRORS, file, Collections.emptyMap());
+        // the full LL fallback reads the file again
+        assertSameResult(SYNTAX_ERRORS, file, Map.of("parseMode", "sll"));
+    }
+}
@@ -0,0 +1,59 @@
+package pt.up.fe.comp.cp1;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.junit.Test;
+import pt.up.fe.comp.jmm.ast.antlr.AntlrParser;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2024.JavammLexer;
+import pt.up.fe.comp2024.JavammParser;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Checks that the lexer and parser instances that {@link JmmParserImpl} reuses on each thread give the same trees as
+ * new instances, when parsing many files in a row.
+ */
+public class ParserReuseTest {
+
+    private static final File CORPUS = new File("test/pt/up/fe/comp/cpf/1_parser_and_tree");
+    private static final int ROUNDS = 3;
+
+    private static JmmParserResult parseWithNewInstances(String code) {
+        var lex = new JavammLexer(new ANTLRInputStream(code));
+        var parser = new JavammParser(new CommonTokenStream(lex));
+        return AntlrParser.parse(lex, parser, "program", Collections.emptyMap());
+    }
+
+    private static String toTree(JmmParserResult result) {
+        assertNotNull("Parse failed: " + result.getReports(), result.getRootNode());
+        return result.getRootNode().toTree();
+    }
+
+    @Test
+    public void reusedInstancesGiveSameTrees() {
+        var corpus = SpecsIo.getFilesRecursive(CORPUS, "jmm").stream()
+                .map(SpecsIo::read)
+                .toList();
+        assertFalse("Empty corpus in " + CORPUS, corpus.isEmpty());
+
+        JmmParserImpl.warmUp();
+
+        // every parse after the first reuses the instances of this thread
+        for (int i = 0; i < ROUNDS; i++) {
+            for (var code : corpus) {
+                var expected = toTree(parseWithNewInstances(code));
+                assertEquals(expected, toTree(new JmmParserImpl().parse(code, Collections.emptyMap())));
+                assertEquals(expected, toTree(new JmmParserImpl().parse(code, Map.of("parseMode", "sll"))));
+            }
+        }
+    }
+}
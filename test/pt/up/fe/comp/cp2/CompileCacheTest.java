@@ -0,0 +1,108 @@
+package pt.up.fe.comp.cp2;
+
+import org.junit.Test;
+import pt.up.fe.comp.JmmProgramGenerator;
+import pt.up.fe.comp2024.CompileCache;
+import pt.up.fe.comp2024.JmmCompiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compiles the same file several times with a compile cache ('-c'), and checks that the result is reused only when the
+ * code and the options that change the output are the same.
+ */
+public class CompileCacheTest {
+
+    private static File writeProgram(Path dir) throws IOException {
+        var code = new JmmProgramGenerator(20, 20, 4)
+                .withNestingDepth(2)
+                .withArrays(true)
+                .generate("Cached");
+
+        return Files.writeString(dir.resolve("Cached.jmm"), code).toFile();
+    }
+
+    private static Map<String, String> config(Path cacheDir) {
+        var config = new HashMap<String, String>();
+        config.put("cacheDir", cacheDir.toString());
+        config.put("methodCache", "false");
+        return config;
+    }
+
+    private static long countEntries(Path cacheDir) throws IOException {
+        try (Stream<Path> files = Files.walk(cacheDir)) {
+            return files.filter(file -> file.toString().endsWith(".json")).count();
+        }
+    }
+
+    @Test
+    public void hitReusesResult() throws IOException {
+        var dir = Files.createTempDirectory("jmm-cache-test");
+        var cacheDir = dir.resolve("cache");
+        var inputFile = writeProgram(dir);
+        var config = config(cacheDir);
+        var compiler = new JmmCompiler();
+
+        var first = compiler.compile(inputFile, config);
+        assertTrue(first.isSuccess());
+        assertEquals(1, countEntries(cacheDir));
+
+        var second = compiler.compile(inputFile, config);
+        assertTrue(second.isSuccess());
+        assertEquals(1, countEntries(cacheDir));
+
+        assertEquals(first.getOllirCode(), second.getOllirCode());
+        assertEquals(first.getJasminResult().orElseThrow().getJasminCode(),
+                second.getJasminResult().orElseThrow().getJasminCode());
+        assertEquals(first.getReports().toString(), second.getReports().toString());
+
+        // another entry for the optimized code
+        config.put("optimize", "true");
+        assertTrue(compiler.compile(inputFile, config).isSuccess());
+        assertEquals(2, countEntries(cacheDir));
+    }
+
+    @Test
+    public void keyDependsOnOutputOptions() {
+        var code = "class A {}";
+
+        assertEquals(CompileCache.getKey(code, Map.of()), CompileCache.getKey(code, Map.of("verbosity", "2")));
+        assertNotEquals(CompileCache.getKey(code, Map.of()), CompileCache.getKey(code, Map.of("optimize", "true")));
+        assertNotEquals(CompileCache.getKey(code, Map.of()), CompileCache.getKey(code + " ", Map.of()));
+    }
+
+    @Test
+    public void fileKeyMatchesContents() throws IOException {
+        var dir = Files.createTempDirectory("jmm-cache-test");
+        var inputFile = writeProgram(dir);
+
+        assertEquals(CompileCache.getKey(Files.readString(inputFile.toPath()), Map.of()),
+                CompileCache.getKey(inputFile, Map.of()));
+    }
+
+    @Test
+    public void orphanedTempFilesAreDeleted() throws IOException {
+        var dir = Files.createTempDirectory("jmm-cache-test");
+        var cacheDir = dir.resolve("cache");
+        var inputFile = writeProgram(dir);
+
+        // left by a writer that crashed before renaming it
+        var tempFile = Files.createDirectories(cacheDir.resolve("00")).resolve("00crashed.tmp");
+        Files.writeString(tempFile, "{");
+
+        assertTrue(new JmmCompiler().compile(inputFile, config(cacheDir)).isSuccess());
+        assertFalse(Files.exists(tempFile));
+        assertEquals(1, countEntries(cacheDir));
+    }
+}
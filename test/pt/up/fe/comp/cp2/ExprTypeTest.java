@@ -0,0 +1,69 @@
+package pt.up.fe.comp.cp2;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.ast.TypeUtils;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks the types stored on expressions, which are shared with the symbol table of their own compilation only.
+ */
+public class ExprTypeTest {
+
+    private static final String CODE = """
+            class Types {
+                public int foo(int a, boolean b) {
+                    int c;
+                    c = a + 1;
+                    return c;
+                }
+            }
+            """;
+
+    private static JmmSemanticsResult analyse() {
+        var result = TestUtils.analyse(CODE, Map.of());
+        TestUtils.noErrors(result);
+        return result;
+    }
+
+    private static Type exprType(JmmSemanticsResult result, String kind) {
+        var expr = result.getRootNode().getDescendants(kind).get(0);
+        return (Type) expr.getObject(TypeUtils.TYPE_ATTRIBUTE);
+    }
+
+    @Test
+    public void sharedWithSymbolTable() {
+        var result = analyse();
+        var intType = result.getSymbolTable().getParameters("foo").get(0).getType();
+
+        assertEquals("int", exprType(result, "BinaryExpr").getName());
+        assertSame(intType, exprType(result, "BinaryExpr"));
+        assertSame(intType, exprType(result, "IntegerExpr"));
+        assertSame(intType, result.getSymbolTable().getReturnType("foo"));
+    }
+
+    @Test
+    public void notSharedBetweenCompilations() {
+        var first = analyse();
+        var second = analyse();
+
+        assertEquals(exprType(first, "BinaryExpr"), exprType(second, "BinaryExpr"));
+        assertNotSame(exprType(first, "BinaryExpr"), exprType(second, "BinaryExpr"));
+    }
+
+    @Test
+    public void enclosingMethod() {
+        var result = analyse();
+        JmmNode expr = result.getRootNode().getDescendants("IDExpr").get(0);
+
+        assertEquals("foo", TypeUtils.getEnclosingMethod(expr));
+    }
+}
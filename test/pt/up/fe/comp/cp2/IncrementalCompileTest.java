@@ -0,0 +1,96 @@
+package pt.up.fe.comp.cp2;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.ast.MethodKey;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Recompiles a class after editing one of its methods, and checks that reusing the results of the unchanged methods
+ * gives the same reports and OLLIR code as compiling it from scratch.
+ */
+public class IncrementalCompileTest {
+
+    private static final Map<String, String> CACHED = Map.of("methodCache", "true");
+    private static final Map<String, String> UNCACHED = Map.of("methodCache", "false");
+
+    private static String code(String className, String firstBody, String secondBody) {
+        return "class " + className + " {\n" +
+                "    public int a() {\n" +
+                "        int x;\n" +
+                firstBody +
+                "        return x;\n" +
+                "    }\n" +
+                "\n" +
+                "    public int b() {\n" +
+                "        int y;\n" +
+                secondBody +
+                "        return y;\n" +
+                "    }\n" +
+                "}\n";
+    }
+
+    private static JmmNode getMethod(JmmSemanticsResult result, String name) {
+        return result.getRootNode().getDescendants(Kind.METHOD_DECL).stream()
+                .filter(method -> method.get("name").equals(name))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static String getKey(JmmSemanticsResult result, String name) {
+        return new MethodKey(result.getSymbolTable()).get(getMethod(result, name));
+    }
+
+    @Test
+    public void onlyEditedMethodChangesKey() {
+        var original = TestUtils.analyse(code("Keys", "        x = 1;\n", "        y = 2;\n"), UNCACHED);
+        // the edit also moves the second method down
+        var edited = TestUtils.analyse(code("Keys", "        x = 1;\n        x = 3;\n", "        y = 2;\n"), UNCACHED);
+
+        assertNotEquals(getKey(original, "a"), getKey(edited, "a"));
+        assertEquals(getKey(original, "b"), getKey(edited, "b"));
+    }
+
+    @Test
+    public void keyFollowsChangesToTheTree() {
+        var result = TestUtils.analyse(code("Changed", "        x = 1;\n", "        y = 2;\n"), UNCACHED);
+        var before = getKey(result, "a");
+
+        // as an optimization that rewrites the method after the analysis
+        var literal = getMethod(result, "a").getDescendants(Kind.INTEGER_EXPR).get(0);
+        literal.put("value", "5");
+
+        assertNotEquals(before, getKey(result, "a"));
+    }
+
+    @Test
+    public void reusedReportsFollowMovedMethod() {
+        var secondBody = "        y = z;\n";
+        TestUtils.analyse(code("MovedReports", "        x = 1;\n", secondBody), CACHED);
+
+        var editedCode = code("MovedReports", "        x = 1;\n        x = 3;\n", secondBody);
+        var reused = TestUtils.analyse(editedCode, CACHED).getReports().stream().map(Report::toString).toList();
+        var fresh = TestUtils.analyse(editedCode, UNCACHED).getReports().stream().map(Report::toString).toList();
+
+        assertEquals(fresh, reused);
+    }
+
+    @Test
+    public void reusedOllirMatchesFullGeneration() {
+        TestUtils.optimize(code("ReusedOllir", "        x = 1;\n", "        y = 2;\n"), CACHED);
+
+        var editedCode = code("ReusedOllir", "        x = 4;\n", "        y = 2;\n");
+        var reused = TestUtils.optimize(editedCode, CACHED).getOllirCode();
+        var fresh = TestUtils.optimize(editedCode, UNCACHED).getOllirCode();
+
+        assertEquals(fresh, reused);
+    }
+}
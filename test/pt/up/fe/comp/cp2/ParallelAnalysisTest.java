@@ -0,0 +1,61 @@
+package pt.up.fe.comp.cp2;
+
+import org.junit.Test;
+import pt.up.fe.comp.JmmProgramGenerator;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Checks that analysing the methods in parallel ('-a') gives the same reports, in the same order, as analysing them
+ * one after the other.
+ */
+public class ParallelAnalysisTest {
+
+    private static final List<File> CORPUS = List.of(
+            new File("test/pt/up/fe/comp/cp2/semanticanalysis"),
+            new File("test/pt/up/fe/comp/cpf/2_semantic_analysis"));
+
+    private static final Map<String, String> SEQUENTIAL = Map.of("parallelAnalysis", "false", "methodCache", "false");
+    private static final Map<String, String> PARALLEL = Map.of("parallelAnalysis", "true", "methodCache", "false");
+
+    private static List<String> analyse(String code, Map<String, String> config) {
+        return TestUtils.analyse(code, config).getReports().stream()
+                .map(Report::toString)
+                .toList();
+    }
+
+    @Test
+    public void sameReportsOnFixtures() {
+        var files = CORPUS.stream()
+                .flatMap(dir -> SpecsIo.getFilesRecursive(dir, "jmm").stream())
+                .toList();
+        assertFalse("Empty corpus in " + CORPUS, files.isEmpty());
+
+        for (var file : files) {
+            var code = SpecsIo.read(file);
+            assertEquals(file.getPath(), analyse(code, SEQUENTIAL), analyse(code, PARALLEL));
+        }
+    }
+
+    @Test
+    public void sameReportsOnManyMethods() {
+        var code = new JmmProgramGenerator(400, 20, 3)
+                .withNestingDepth(2)
+                .withArrays(true)
+                .generate("ManyMethods");
+
+        // repeated, so that methods finish in different orders
+        var expected = analyse(code, SEQUENTIAL);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(expected, analyse(code, PARALLEL));
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package pt.up.fe.comp.cp2;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.report.Report;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the reports of the array, while and local variable checks of TypeCheck, which look each variable up instead
+ * of going through every statement of the method.
+ */
+public class TypeCheckTest {
+
+    private static List<String> messages(String body, String prefix) {
+        var code = """
+                class Checks {
+                    public int foo(int n) {
+                %s
+                        return 0;
+                    }
+                }
+                """.formatted(body);
+
+        return TestUtils.analyse(code, Map.of()).getReports().stream()
+                .map(Report::getMessage)
+                .filter(message -> message.startsWith(prefix))
+                .toList();
+    }
+
+    @Test
+    public void boundsOfLastAllocation() {
+        var messages = messages("""
+                int[] a;
+                a = new int[10];
+                a = new int[2];
+                a[5] = 1;
+                """, "Array out of bounds");
+
+        assertEquals(List.of("Array out of bounds: 5 and 2"), messages);
+    }
+
+    @Test
+    public void boundsIgnoreLaterAllocations() {
+        var messages = messages("""
+                int[] a;
+                a = new int[10];
+                a[5] = 1;
+                a = new int[2];
+                """, "Array out of bounds");
+
+        assertEquals(List.of(), messages);
+    }
+
+    @Test
+    public void boundsIgnoreOtherArrays() {
+        var messages = messages("""
+                int[] a;
+                int[] b;
+                b = new int[2];
+                a = new int[10];
+                a[5] = 1;
+                """, "Array out of bounds");
+
+        assertEquals(List.of(), messages);
+    }
+
+    @Test
+    public void boundsCompareNumbers() {
+        var messages = messages("""
+                int[] a;
+                a = new int[10];
+                a[9] = 1;
+                a[10] = 1;
+                """, "Array out of bounds");
+
+        // compared as strings, "9" would be out of bounds of "10", and "10" would not
+        assertEquals(List.of("Array out of bounds: 10 and 10"), messages);
+    }
+
+    @Test
+    public void boundsIgnoreRuntimeSizes() {
+        var messages = messages("""
+                int[] a;
+                a = new int[2];
+                a = new int[n];
+                a[5] = 1;
+                """, "Array out of bounds");
+
+        assertEquals(List.of(), messages);
+    }
+
+    @Test
+    public void duplicatedLocalReportedPerRepeat() {
+        var messages = messages("""
+                int x;
+                int x;
+                int x;
+                """, "Duplicated local variables");
+
+        // one report for each declaration after the first, not for each pair of declarations
+        assertEquals(List.of("Duplicated local variables: x and x", "Duplicated local variables: x and x"), messages);
+    }
+
+    @Test
+    public void varargsLocalReportedOnce() {
+        var messages = messages("""
+                int... a;
+                int x;
+                int... b;
+                """, "Varargs not allowed in local variables");
+
+        // one report for each varargs local, including the first local of the method
+        assertEquals(2, messages.size());
+    }
+
+    @Test
+    public void whileConditionOnlyChecksItsVariable() {
+        var messages = messages("""
+                boolean b;
+                int x;
+                while (b) {
+                    x = 1;
+                }
+                while (x) {
+                    x = 1;
+                }
+                """, "Can't do a while statement with non boolean");
+
+        // the int declared after 'b' is not reported for the first loop
+        assertEquals(List.of("Can't do a while statement with non boolean: int"), messages);
+    }
+
+    @Test
+    public void arrayAccessOnIntInMethodBody() {
+        var messages = messages("""
+                int x;
+                int y;
+                y = x[0];
+                """, "Can't do an array expression with non array");
+
+        assertEquals(1, messages.size());
+    }
+
+    @Test
+    public void arrayAccessOnIntInNestedStatement() {
+        var messages = messages("""
+                int x;
+                int y;
+                boolean b;
+                while (b) {
+                    y = x[0];
+                }
+                """, "Can't do an array expression with non array");
+
+        // as before, only statements directly in the method body are checked
+        assertEquals(List.of(), messages);
+    }
+}
@@ -0,0 +1,86 @@
+package pt.up.fe.comp.cpf;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.backend.ClassFileBackendImpl;
+import pt.up.fe.comp2024.backend.JasminBackendImpl;
+import pt.up.fe.specs.util.SpecsStrings;
+
+import java.util.Collections;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that conditional branches jump on their comparisons, without computing a boolean first.
+ */
+public class BranchLoweringTest {
+
+    // the tests of both loops are booleans computed just for the branch
+    private static final String CODE = """
+            import io;
+            Loops {
+                .construct Loops().V {
+                    invokespecial(this, "<init>").V;
+                }
+
+                .method public static main(args.array.String).V {
+                    i.i32 :=.i32 0.i32;
+                    n.i32 :=.i32 3.i32;
+                    t1.bool :=.bool i.i32 <.bool n.i32;
+                    if (!.bool t1.bool) goto end_0;
+                body_0:
+                    invokestatic(io, "println", i.i32).V;
+                    i.i32 :=.i32 i.i32 +.i32 1.i32;
+                    t2.bool :=.bool i.i32 <.bool n.i32;
+                    if (t2.bool) goto body_0;
+                end_0:
+                    j.i32 :=.i32 2.i32;
+                    if (0.i32 <.bool j.i32) goto body_1;
+                    goto end_1;
+                body_1:
+                    invokestatic(io, "println", j.i32).V;
+                    j.i32 :=.i32 j.i32 -.i32 1.i32;
+                    if (0.i32 <.bool j.i32) goto body_1;
+                end_1:
+                    ret.V;
+                }
+            }
+            """;
+
+    private static int count(String code, String regex) {
+        var matcher = Pattern.compile(regex).matcher(code);
+
+        int count = 0;
+        while (matcher.find()) {
+            count++;
+        }
+
+        return count;
+    }
+
+    @Test
+    public void jasminJumpsOnComparisons() {
+        var result = new JasminBackendImpl().toJasmin(new OllirResult(CODE, Collections.emptyMap()));
+        var code = result.getJasminCode();
+
+        // no boolean is computed to be tested (see JasminGenerator#generateComparison)
+        assertFalse(code, code.contains("cmp_true"));
+
+        assertEquals(code, 1, count(code, "if_icmpge\\s+end_0"));
+        assertEquals(code, 1, count(code, "if_icmplt\\s+body_0"));
+        assertEquals(code, 2, count(code, "ifgt\\s+body_1"));
+        assertTrue(code, code.contains("end_1:"));
+
+        assertEquals("0\n1\n2\n2\n1", SpecsStrings.normalizeFileContents(result.run(), true));
+    }
+
+    @Test
+    public void classFileJumpsOnComparisons() {
+        var result = new ClassFileBackendImpl().toClassFile(new OllirResult(CODE, Collections.emptyMap()));
+
+        assertEquals("0\n1\n2\n2\n1", ClassFileBackendTest.run(result));
+    }
+}
@@ -0,0 +1,125 @@
+package pt.up.fe.comp.cpf;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.JmmCompiler;
+import pt.up.fe.comp2024.backend.ClassFileBackendImpl;
+import pt.up.fe.comp2024.backend.ClassFileResult;
+import pt.up.fe.comp2024.backend.JasminBackendImpl;
+import pt.up.fe.specs.util.SpecsIo;
+import pt.up.fe.specs.util.SpecsStrings;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the class files written directly by the class file backend ('-e=class') for the OLLIR fixtures of
+ * {@code cpf/4_jasmin}, and checks that they behave the same as the class files assembled from the Jasmin backend.
+ */
+public class ClassFileBackendTest {
+
+    private static final File FIXTURES = new File("test/pt/up/fe/comp/cpf/4_jasmin");
+
+    private record Execution(int exitCode, String output) {
+    }
+
+    /**
+     * @param classDir
+     * @param className
+     * @return the exit code and the normalized output, including errors, of running the given class
+     */
+    private static Execution execute(File classDir, String className) {
+        try {
+            var classpath = classDir.getAbsolutePath() + File.pathSeparator + TestUtils.getLibsClasspath();
+            var process = new ProcessBuilder(List.of("java", "-cp", classpath, className))
+                    .redirectErrorStream(true)
+                    .start();
+
+            var output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            return new Execution(process.waitFor(), SpecsStrings.normalizeFileContents(output, true));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static File newClassDir() {
+        try {
+            return Files.createTempDirectory("jmm-class-test").toFile();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Execution execute(ClassFileResult result) {
+        var classDir = newClassDir();
+        result.write(classDir);
+        return execute(classDir, result.getClassName());
+    }
+
+    private static Execution execute(JasminResult result) {
+        var classDir = newClassDir();
+        result.compile(classDir);
+        return execute(classDir, result.getClassName());
+    }
+
+    static String run(ClassFileResult result) {
+        var execution = execute(result);
+        assertEquals("Exit code of " + result.getClassName() + ", output:\n" + execution.output(), 0,
+                execution.exitCode());
+
+        return execution.output();
+    }
+
+    @Test
+    public void sameBehaviourOnFixtures() {
+        var files = SpecsIo.getFilesRecursive(FIXTURES, "ollir");
+        assertFalse("Empty corpus in " + FIXTURES, files.isEmpty());
+
+        for (var file : files) {
+            var ollirCode = SpecsIo.read(file);
+            // each backend gets its own OLLIR, since the backends annotate it
+            var jasminResult = new JasminBackendImpl().toJasmin(new OllirResult(ollirCode, Collections.emptyMap()));
+            var classFileResult = new ClassFileBackendImpl()
+                    .toClassFile(new OllirResult(ollirCode, Collections.emptyMap()));
+
+            TestUtils.noErrors(jasminResult);
+            TestUtils.noErrors(classFileResult);
+            assertEquals(file.getPath(), execute(jasminResult), execute(classFileResult));
+        }
+    }
+
+    @Test
+    public void compilerWritesClassFile() {
+        var inputFile = new File(FIXTURES, "control_flow/SimpleWhileStat.jmm");
+        var compiler = new JmmCompiler();
+
+        var jasmin = compiler.compile(inputFile, Map.of("methodCache", "false"));
+        var classFile = compiler.compile(inputFile, Map.of("outputFormat", "class", "methodCache", "false"));
+
+        assertTrue(classFile.getReports().toString(), classFile.isSuccess());
+        assertTrue(classFile.getJasminResult().isEmpty());
+
+        var bytes = classFile.getClassFileResult().orElseThrow().getClassFile();
+        assertEquals(0xCAFEBABE, ((bytes[0] & 0xFF) << 24) | ((bytes[1] & 0xFF) << 16)
+                | ((bytes[2] & 0xFF) << 8) | (bytes[3] & 0xFF));
+
+        assertTrue(jasmin.getReports().toString(), jasmin.isSuccess());
+        assertEquals(execute(jasmin.getJasminResult().orElseThrow()),
+                execute(classFile.getClassFileResult().orElseThrow()));
+    }
+}
@@ -0,0 +1,95 @@
+package pt.up.fe.comp.cpf;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the OLLIR generated with constant propagation and folding ('-o').
+ */
+public class ConstantPropagationTest {
+
+    private static final String BRANCHES = """
+            class Branches {
+                public int foo(int p) {
+                    int x;
+                    int y;
+                    if (p < 2) {
+                        x = 1 + 2;
+                    } else {
+                        x = 3;
+                    }
+                    y = x * 2;
+                    return y;
+                }
+                public static void main(String[] args) {
+                }
+            }
+            """;
+
+    private static String ollir(String code, Map<String, String> config) {
+        var result = TestUtils.optimize(code, config);
+        TestUtils.noErrors(result.getReports());
+
+        return result.getOllirCode();
+    }
+
+    @Test
+    public void loopKeepsChangedVariable() {
+        var code = SpecsIo.getResource("pt/up/fe/comp/cpf/5_optimizations/const_prop/PropWithLoop.jmm");
+        var original = ollir(code, Map.of("optimize", "false"));
+        var optimized = ollir(code, Map.of("optimize", "true"));
+
+        assertNotEquals(original, optimized);
+        // 'a' is never assigned in the loop, 'i' is
+        assertTrue(original.contains("i.i32 *.i32 a.i32"));
+        assertTrue(optimized.contains("i.i32 *.i32 10.i32"));
+    }
+
+    @Test
+    public void loopBodyKeepsChangedVariable() {
+        var code = SpecsIo.getResource("pt/up/fe/comp/cpf/5_optimizations/const_prop/PropWithLoop.jmm");
+        var semantics = TestUtils.analyse(code, Map.of("optimize", "true"));
+        TestUtils.noErrors(semantics);
+        new JmmOptimizationImpl().optimize(semantics);
+
+        var loop = semantics.getRootNode().getDescendants("WhileStmt").get(0);
+        var condition = loop.getChild(0);
+        var increment = loop.getChild(1).getDescendants("BinaryExpr").get(0);
+
+        // 'a' is never assigned in the loop, so it is folded in the condition
+        assertEquals("IntegerExpr", condition.getChild(1).getKind());
+        assertEquals("10", condition.getChild(1).get("value"));
+
+        // 'i' is assigned in the loop, so it stays a variable in the condition and in the body
+        assertEquals("IDExpr", condition.getChild(0).getKind());
+        assertEquals("i", condition.getChild(0).get("name"));
+        assertEquals("IDExpr", increment.getChild(0).getKind());
+        assertEquals("i", increment.getChild(0).get("name"));
+    }
+
+    @Test
+    public void foldsBranchesWithSameValue() {
+        var optimized = ollir(BRANCHES, Map.of("optimize", "true"));
+
+        assertFalse(optimized.contains("x.i32"));
+        assertTrue(optimized.contains("ret.i32 6.i32"));
+    }
+
+    @Test
+    public void optimizeWithMethodCache() {
+        var original = ollir(BRANCHES, Map.of("optimize", "false", "methodCache", "true"));
+        var optimized = ollir(BRANCHES, Map.of("optimize", "true", "methodCache", "true"));
+
+        assertNotEquals(original, optimized);
+        assertEquals(ollir(BRANCHES, Map.of("optimize", "true")), optimized);
+    }
+}
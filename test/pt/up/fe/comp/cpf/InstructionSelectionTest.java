@@ -0,0 +1,68 @@
+package pt.up.fe.comp.cpf;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.backend.ClassFileBackendImpl;
+import pt.up.fe.comp2024.backend.JasminBackendImpl;
+
+import java.util.Collections;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the instructions chosen for increments, small constants and comparisons with zero, by both backends.
+ */
+public class InstructionSelectionTest {
+
+    private static final String CODE = """
+            import io;
+            Selection {
+                .construct Selection().V {
+                    invokespecial(this, "<init>").V;
+                }
+
+                .method public static main(args.array.String).V {
+                    i.i32 :=.i32 2.i32;
+                    t1.i32 :=.i32 i.i32 +.i32 1.i32;
+                    i.i32 :=.i32 t1.i32;
+                    i.i32 :=.i32 i.i32 -.i32 5.i32;
+                    m.i32 :=.i32 -1.i32;
+                    invokestatic(io, "println", i.i32).V;
+                    b.bool :=.bool m.i32 <.bool 0.i32;
+                    invokestatic(io, "println", b.bool).V;
+                    t2.i32 :=.i32 i.i32 +.i32 1.i32;
+                    j.i32 :=.i32 t2.i32;
+                    invokestatic(io, "println", t2.i32).V;
+                    ret.V;
+                }
+            }
+            """;
+
+    private static boolean matches(String code, String regex) {
+        return Pattern.compile(regex).matcher(code).find();
+    }
+
+    @Test
+    public void jasminUsesCheaperInstructions() {
+        var code = new JasminBackendImpl().toJasmin(new OllirResult(CODE, Collections.emptyMap())).getJasminCode();
+
+        assertTrue(code, matches(code, "iinc\\s+1\\s+1\\s"));
+        assertTrue(code, matches(code, "iinc\\s+1\\s+-5\\s"));
+        assertTrue(code, matches(code, "iconst_m1"));
+        assertTrue(code, matches(code, "iflt"));
+
+        // 't2' is used after the copy, so it is not an increment
+        assertFalse(code, matches(code, "iinc\\s+\\d+\\s+1\\s+iload\\s+\\d+\\s+invokestatic"));
+        assertTrue(code, matches(code, "iadd"));
+    }
+
+    @Test
+    public void classFileComputesSameValues() {
+        var result = new ClassFileBackendImpl().toClassFile(new OllirResult(CODE, Collections.emptyMap()));
+
+        assertEquals("-2\ntrue\n-1", ClassFileBackendTest.run(result));
+    }
+}
@@ -0,0 +1,43 @@
+package pt.up.fe.comp.cpf;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.backend.JasminBackendImpl;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that streaming the Jasmin code to a file writes the same code as generating it in memory.
+ */
+public class JasminStreamingTest {
+
+    private static final List<String> FIXTURES = List.of(
+            "pt/up/fe/comp/cpf/4_jasmin/arithmetic/Arithmetic_and.ollir",
+            "pt/up/fe/comp/cpf/4_jasmin/arrays/ArrayVarArgs.ollir",
+            "pt/up/fe/comp/cpf/4_jasmin/control_flow/SwitchStat.ollir",
+            "pt/up/fe/comp/cpf/4_jasmin/limits/LocalLimits.ollir");
+
+    @Test
+    public void fileMatchesMemory() throws IOException {
+        var dir = Files.createTempDirectory("jmm-jasmin-test");
+        var backend = new JasminBackendImpl();
+
+        for (var resource : FIXTURES) {
+            var code = SpecsIo.getResource(resource);
+            var jasminFile = dir.resolve(new File(resource).getName() + ".j").toFile();
+
+            var inMemory = backend.toJasmin(new OllirResult(code, Collections.emptyMap())).getJasminCode();
+            backend.toJasminFile(new OllirResult(code, Collections.emptyMap()), jasminFile);
+
+            assertEquals(resource, inMemory, Files.readString(jasminFile.toPath(), StandardCharsets.UTF_8));
+        }
+    }
+}
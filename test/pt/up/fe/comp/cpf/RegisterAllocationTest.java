@@ -0,0 +1,92 @@
+package pt.up.fe.comp.cpf;
+
+import org.junit.Test;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp2024.backend.ClassFileBackendImpl;
+import pt.up.fe.comp2024.backend.JasminBackendImpl;
+import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.HashMap;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the registers given to the locals by the register allocation ('-r=&lt;n&gt;').
+ */
+public class RegisterAllocationTest {
+
+    // the OLLIR of cpf/5_optimizations/reg_alloc/regalloc.jmm
+    private static final String CHAINED_LOCALS = """
+            RegAlloc {
+                .construct RegAlloc().V {
+                    invokespecial(this, "<init>").V;
+                }
+
+                .method public soManyRegisters(arg.i32).i32 {
+                    a.i32 :=.i32 0.i32;
+                    b.i32 :=.i32 a.i32;
+                    c.i32 :=.i32 b.i32;
+                    d.i32 :=.i32 c.i32;
+                    ret.i32 d.i32;
+                }
+
+                .method public static main(args.array.String).V {
+                    ret.V;
+                }
+            }
+            """;
+
+    private static OllirResult allocate(String code, int registers) {
+        var config = new HashMap<String, String>();
+        config.put("registerAllocation", String.valueOf(registers));
+
+        return new JmmOptimizationImpl().optimize(new OllirResult(code, config));
+    }
+
+    private static int getLocalsLimit(JasminResult result, String method) {
+        var matcher = Pattern.compile("\\.limit\\s+locals\\s+(\\d+)\\s+")
+                .matcher(CpUtils.getJasminMethod(result, method));
+        assertTrue(matcher.find());
+
+        return Integer.parseInt(matcher.group(1));
+    }
+
+    @Test
+    public void chainedLocalsShareRegister() {
+        var backend = new JasminBackendImpl();
+
+        var original = backend.toJasmin(allocate(CHAINED_LOCALS, -1));
+        var allocated = backend.toJasmin(allocate(CHAINED_LOCALS, 3));
+
+        assertEquals(6, getLocalsLimit(original, "soManyRegisters"));
+        assertEquals(3, getLocalsLimit(allocated, "soManyRegisters"));
+    }
+
+    @Test
+    public void minimumRegisters() {
+        var result = new JasminBackendImpl().toJasmin(allocate(CHAINED_LOCALS, 0));
+
+        assertEquals(3, getLocalsLimit(result, "soManyRegisters"));
+    }
+
+    @Test
+    public void tooFewRegisters() {
+        var result = allocate(CHAINED_LOCALS, 2);
+
+        assertEquals(1, result.getReports().stream().filter(report -> report.getType() == ReportType.ERROR).count());
+    }
+
+    @Test
+    public void sameOutputWithAllocation() {
+        var code = SpecsIo.getResource("pt/up/fe/comp/cpf/4_jasmin/arrays/ComplexArrayAccess.ollir");
+        var result = new ClassFileBackendImpl().toClassFile(allocate(code, 0));
+
+        assertEquals("Result: 1\nResult: 2\nResult: 3\nResult: 4\nResult: 5", ClassFileBackendTest.run(result));
+    }
+}
@@ -0,0 +1,43 @@
+package pt.up.fe.comp.cpf;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the right operand of '&&' is only computed when the left one is true.
+ */
+public class ShortCircuitTest {
+
+    @Test
+    public void rightOperandAfterJump() {
+        var ollirResult = TestUtils.optimize("""
+                class ShortCircuit {
+                    public int foo(int a, int b) {
+                        boolean c;
+                        c = a < b && this.bar(a);
+                        return 0;
+                    }
+                    public boolean bar(int x) {
+                        return true;
+                    }
+                    public static void main(String[] args) {
+                    }
+                }
+                """);
+        var code = ollirResult.getOllirCode();
+
+        assertFalse(code, code.contains("&&"));
+
+        var trueLabel = code.indexOf("and_true_");
+        var skip = code.indexOf("goto and_end_");
+        var call = code.indexOf("invokevirtual(this");
+        var endLabel = code.indexOf("and_end_", skip + "goto ".length() + 1);
+
+        // if (a < b) goto and_true; c := 0; goto and_end; and_true: ...bar(a)...; and_end:
+        assertTrue(code, trueLabel >= 0 && skip > trueLabel);
+        assertTrue(code, call > skip && endLabel > call);
+    }
+}
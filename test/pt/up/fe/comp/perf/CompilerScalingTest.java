@@ -0,0 +1,150 @@
+package pt.up.fe.comp.perf;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import pt.up.fe.comp.JmmProgramGenerator;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp2024.JmmCompiler;
+import pt.up.fe.comp2024.StageStats;
+import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+
+import java.io.File;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compiles synthetic programs of increasing size end to end, and fails if the time or the memory allocated by the
+ * compiler grows worse than linearly with the size of the program. The semantic analysis is also measured on its own
+ * over large methods, where its cost is hidden by the other stages.
+ * <p>
+ * Run with './gradlew perfTest', see {@link PerformanceTest}.
+ */
+@Category(PerformanceTest.class)
+public class CompilerScalingTest {
+
+    private static final int[] SCALES = {1, 2, 4, 8};
+    private static final int REPEATS = 3;
+
+    /**
+     * How much the cost per unit of size may grow from the smallest to the largest program. A quadratic stage would
+     * make it grow by the largest scale, 8 times.
+     */
+    private static final double TIME_SLACK = 2.5;
+    private static final double MEMORY_SLACK = 1.5;
+
+    // each repetition processes every method, instead of reusing the results of the previous one
+    private static final Map<String, String> NO_CACHE = Map.of("methodCache", "false");
+
+    @Test
+    public void scalesWithMethods() {
+        assertLinear("methods", scale -> new JmmProgramGenerator(25 * scale, 20, 4)
+                .withLocals(4)
+                .withNestingDepth(2)
+                .withArrays(true));
+    }
+
+    @Test
+    public void scalesWithStatements() {
+        assertLinear("statements", scale -> new JmmProgramGenerator(4, 100 * scale, 4)
+                .withLocals(4)
+                .withNestingDepth(2));
+    }
+
+    @Test
+    public void scalesWithExpressionDepth() {
+        assertLinear("expression depth", scale -> new JmmProgramGenerator(4, 20, 10 * scale));
+    }
+
+    @Test
+    public void analysisScalesWithStatements() {
+        // array stores at the top level of the method, next to every other assignment
+        assertLinear("statements (analysis)", scale -> new JmmProgramGenerator(1, 250 * scale, 1)
+                .withLocals(4)
+                .withArrays(true), CompilerScalingTest::measureAnalysis);
+    }
+
+    @Test
+    public void analysisScalesWithLocals() {
+        // every while statement, and the method itself, used to be checked against all the locals
+        assertLinear("locals (analysis)", scale -> new JmmProgramGenerator(1, 50 * scale, 1)
+                .withLocals(50 * scale)
+                .withNestingDepth(2)
+                .withArrays(true), CompilerScalingTest::measureAnalysis);
+    }
+
+    private static void assertLinear(String dimension, IntFunction<JmmProgramGenerator> generator) {
+        assertLinear(dimension, generator, CompilerScalingTest::measure);
+    }
+
+    private static void assertLinear(String dimension, IntFunction<JmmProgramGenerator> generator,
+                                     Function<String, StageStats.StageEntry> measure) {
+        // warm up on the largest program, so that the smallest is not measured cold
+        var largest = SCALES[SCALES.length - 1];
+        measure.apply(generator.apply(largest).generate("Warmup"));
+
+        var first = measure.apply(generator.apply(SCALES[0]).generate("Scaled"));
+        var last = first;
+        for (int i = 1; i < SCALES.length; i++) {
+            last = measure.apply(generator.apply(SCALES[i]).generate("Scaled"));
+        }
+
+        double ratio = (double) largest / SCALES[0];
+        double timeGrowth = (double) last.getWallNanos() / first.getWallNanos() / ratio;
+        double memoryGrowth = (double) last.getAllocatedBytes() / first.getAllocatedBytes() / ratio;
+
+        assertTrue("Time grows worse than linearly with " + dimension + ": x" + timeGrowth + " per unit",
+                timeGrowth <= TIME_SLACK);
+        // allocations are only measured in HotSpot-based JVMs
+        if (first.getAllocatedBytes() > 0) {
+            assertTrue("Memory grows worse than linearly with " + dimension + ": x" + memoryGrowth + " per unit",
+                    memoryGrowth <= MEMORY_SLACK);
+        }
+    }
+
+    /**
+     * Compiles the code several times and keeps the fastest run.
+     */
+    private static StageStats.StageEntry measure(String code) {
+        var compiler = new JmmCompiler();
+        StageStats.StageEntry best = null;
+
+        for (int i = 0; i < REPEATS; i++) {
+            var stats = new StageStats(true);
+            var result = stats.measure("compile", () -> compiler.compile(new File("Scaled.jmm"), code, NO_CACHE));
+            assertTrue("Generated program does not compile: " + result.getReports(), result.isSuccess());
+
+            var entry = stats.getStages().get(0);
+            if (best == null || entry.getWallNanos() < best.getWallNanos()) {
+                best = entry;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Analyses the code several times, parsing it only once, and keeps the fastest run.
+     */
+    private static StageStats.StageEntry measureAnalysis(String code) {
+        var parserResult = new JmmParserImpl().parse(code, NO_CACHE);
+        StageStats.StageEntry best = null;
+
+        for (int i = 0; i < REPEATS; i++) {
+            var stats = new StageStats(true);
+            var result = stats.measure("analysis", () -> new JmmAnalysisImpl().semanticAnalysis(parserResult));
+            assertTrue("Generated program does not pass the analysis: " + result.getReports(),
+                    result.getReports().stream().noneMatch(report -> report.getType() == ReportType.ERROR));
+
+            var entry = stats.getStages().get(0);
+            if (best == null || entry.getWallNanos() < best.getWallNanos()) {
+                best = entry;
+            }
+        }
+
+        return best;
+    }
+}
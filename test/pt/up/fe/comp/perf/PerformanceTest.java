@@ -0,0 +1,8 @@
+package pt.up.fe.comp.perf;
+
+/**
+ * JUnit category of the tests that assert on wall-clock time. They are left out of './gradlew test', since their
+ * results depend on the load of the machine, and run with './gradlew perfTest'.
+ */
+public interface PerformanceTest {
+}